@@ -0,0 +1,252 @@
+/**
+ *Precomputed attack bitboards for every piece.
+ *Knight, king and pawn attacks are looked up by square. Rook and
+ *bishop attacks, which depend on blockers, use magic bitboards:
+ *the relevant blockers are multiplied by a per-square magic number
+ *and the top bits of the product index a table of attack sets.
+ *The magic numbers below were found by a seeded random search for
+ *numbers with no destructive collisions.
+ *@author Jordan Goldstein
+ *@version 1.0.0
+ */
+public final class Attacks {
+    private static final long[] KNIGHT = new long[64];
+    private static final long[] KING = new long[64];
+    private static final long[][] PAWN = new long[2][64];
+
+    private static final long[] ROOK_MASK = new long[64];
+    private static final long[] ROOK_MAGIC = {
+        0x008000908064C000L, 0x0040200040001000L, 0x0180100080A0010AL,
+        0x8880041000800800L, 0x1200100201200804L, 0x0200020004011008L,
+        0x2180010000800600L, 0x0200005088210204L, 0x0000800080204001L,
+        0x1000804000802001L, 0x8240801000200080L, 0x8611001004200900L,
+        0x008180800C001800L, 0x0100800200800400L, 0x0A02000102000408L,
+        0x8020802300104280L, 0x0080004000402000L, 0xE010104000402000L,
+        0x0800808010002000L, 0xA280210008100100L, 0x0001818014000800L,
+        0xA002010100080400L, 0x0008040088020130L, 0x0001020004048845L,
+        0x0081826280004004L, 0x2020810900284000L, 0x0200100080802000L,
+        0x0200080080100080L, 0x8083080100100500L, 0x4406000901000400L,
+        0x0005020080800100L, 0x0090204200008114L, 0x0010400094800420L,
+        0x0900804000802002L, 0x0201001841002000L, 0x4100080080801000L,
+        0x4540040080800800L, 0x0000800400800200L, 0x9281800100808200L,
+        0x8004048102000854L, 0x4420802040008006L, 0x0880500020004002L,
+        0x0801200241050010L, 0x8400080010008080L, 0x0008000500090010L,
+        0x0082009084020008L, 0x4012000108020004L, 0x9000104D08860004L,
+        0x2004204114800100L, 0x0148802112400300L, 0x0202842000100880L,
+        0x001B080080900080L, 0x001A002008100600L, 0x0004008004020080L,
+        0x5181000600040300L, 0x0000044401128A00L, 0x8044110480002441L,
+        0x1023012082044112L, 0x00804080200A0012L, 0x000420310A004A42L,
+        0x0023001004020801L, 0x0882001008040102L, 0x000230088118020CL,
+        0x0000019025040042L};
+    private static final int[] ROOK_SHIFT = new int[64];
+    private static final long[][] ROOK_TABLE = new long[64][];
+
+    private static final long[] BISHOP_MASK = new long[64];
+    private static final long[] BISHOP_MAGIC = {
+        0x1010220204082A00L, 0x80E0020202002804L, 0x2008480104200020L,
+        0x000220920280002DL, 0x32040421000B0284L, 0x1002080404000400L,
+        0x0004160892080040L, 0x2203024206204201L, 0x0002404264010200L,
+        0x1120908408428124L, 0xB100424403002280L, 0x240008060440C288L,
+        0x2040040420490400L, 0x0100620210040022L, 0x0400084104202028L,
+        0x0010050080908820L, 0x0C90A04490824802L, 0x000200A008210130L,
+        0x0C08001000204010L, 0x0008000186014480L, 0x0601044820080021L,
+        0x0002000101013100L, 0x1400A08108080204L, 0x0250401104485410L,
+        0x4820240810142843L, 0x0009142A20182200L, 0x0848140048440020L,
+        0x2020120000400440L, 0x0108840200802003L, 0x0009070082009492L,
+        0x020C0C0038424245L, 0xCA44005808210410L, 0x8011212000500404L,
+        0x2028840510101008L, 0x0004042A00041400L, 0x0624020080980080L,
+        0x1820410040840040L, 0x2201004202050100L, 0x402A088A24040224L,
+        0x0242061040002400L, 0x90020202400821A0L, 0x00C9009004E01002L,
+        0x58C2060202023100L, 0x0000012214040800L, 0x0210846810100200L,
+        0x0004208081010200L, 0x01A4108404442100L, 0x8054082C80280106L,
+        0x0004144904104208L, 0x00324C0A11104000L, 0x1000020231040100L,
+        0x2080001042020004L, 0x0544021020288104L, 0x1103501408083020L,
+        0x4010451004960002L, 0x003010091C44902CL, 0x0102402884202000L,
+        0x0480804C00841086L, 0x04602C8602210400L, 0x0000004000420200L,
+        0x0040000020442C18L, 0x4483804089094100L, 0x80000B0248020400L,
+        0x0045010808008680L};
+    private static final int[] BISHOP_SHIFT = new int[64];
+    private static final long[][] BISHOP_TABLE = new long[64][];
+
+    private static final int[][] ROOK_STEPS = {{1, 0}, {-1, 0}, {0, 1},
+                                               {0, -1}};
+    private static final int[][] BISHOP_STEPS = {{1, 1}, {1, -1}, {-1, 1},
+                                                 {-1, -1}};
+    private static final int[][] KNIGHT_STEPS = {{1, 2}, {2, 1}, {2, -1},
+                                                 {1, -2}, {-1, -2}, {-2, -1},
+                                                 {-2, 1}, {-1, 2}};
+    private static final int[][] KING_STEPS = {{1, 0}, {1, 1}, {0, 1},
+                                               {-1, 1}, {-1, 0}, {-1, -1},
+                                               {0, -1}, {1, -1}};
+
+    static {
+        for (int sq = 0; sq < 64; sq++) {
+            KNIGHT[sq] = leaps(sq, KNIGHT_STEPS);
+            KING[sq] = leaps(sq, KING_STEPS);
+            PAWN[Position.WHITE][sq] = leaps(sq, new int[][] {{1, 1},
+                                                               {-1, 1}});
+            PAWN[Position.BLACK][sq] = leaps(sq, new int[][] {{1, -1},
+                                                               {-1, -1}});
+            ROOK_MASK[sq] = relevant(sq, ROOK_STEPS);
+            BISHOP_MASK[sq] = relevant(sq, BISHOP_STEPS);
+            ROOK_SHIFT[sq] = 64 - Long.bitCount(ROOK_MASK[sq]);
+            BISHOP_SHIFT[sq] = 64 - Long.bitCount(BISHOP_MASK[sq]);
+            ROOK_TABLE[sq] = new long[1 << Long.bitCount(ROOK_MASK[sq])];
+            BISHOP_TABLE[sq] = new long[1 << Long.bitCount(BISHOP_MASK[sq])];
+            fill(sq, ROOK_MASK[sq], ROOK_MAGIC[sq], ROOK_SHIFT[sq],
+                 ROOK_TABLE[sq], ROOK_STEPS);
+            fill(sq, BISHOP_MASK[sq], BISHOP_MAGIC[sq], BISHOP_SHIFT[sq],
+                 BISHOP_TABLE[sq], BISHOP_STEPS);
+        }
+    }
+
+    private Attacks() {
+    }
+
+    /**
+     *@param sq the square a knight stands on
+     *@return every square the knight attacks
+     */
+    public static long knight(int sq) {
+        return KNIGHT[sq];
+    }
+
+    /**
+     *@param sq the square a king stands on
+     *@return every square the king attacks
+     */
+    public static long king(int sq) {
+        return KING[sq];
+    }
+
+    /**
+     *@param color the colour of the pawn
+     *@param sq the square the pawn stands on
+     *@return the squares the pawn attacks diagonally
+     */
+    public static long pawn(int color, int sq) {
+        return PAWN[color][sq];
+    }
+
+    /**
+     *@param sq the square a rook stands on
+     *@param occupied every occupied square on the board
+     *@return every square the rook attacks, up to and including blockers
+     */
+    public static long rook(int sq, long occupied) {
+        return ROOK_TABLE[sq][(int) (((occupied & ROOK_MASK[sq])
+                                      * ROOK_MAGIC[sq]) >>> ROOK_SHIFT[sq])];
+    }
+
+    /**
+     *@param sq the square a bishop stands on
+     *@param occupied every occupied square on the board
+     *@return every square the bishop attacks, up to and including blockers
+     */
+    public static long bishop(int sq, long occupied) {
+        return BISHOP_TABLE[sq][(int) (((occupied & BISHOP_MASK[sq])
+                                        * BISHOP_MAGIC[sq])
+                                       >>> BISHOP_SHIFT[sq])];
+    }
+
+    /**
+     *@param sq the square a queen stands on
+     *@param occupied every occupied square on the board
+     *@return every square the queen attacks, up to and including blockers
+     */
+    public static long queen(int sq, long occupied) {
+        return rook(sq, occupied) | bishop(sq, occupied);
+    }
+
+    /**
+     *@param type a piece type other than PAWN
+     *@param sq the square the piece stands on
+     *@param occupied every occupied square on the board
+     *@return every square the piece attacks
+     */
+    public static long of(int type, int sq, long occupied) {
+        switch (type) {
+        case Position.KNIGHT:
+            return KNIGHT[sq];
+        case Position.BISHOP:
+            return bishop(sq, occupied);
+        case Position.ROOK:
+            return rook(sq, occupied);
+        case Position.QUEEN:
+            return queen(sq, occupied);
+        case Position.KING:
+            return KING[sq];
+        default:
+            throw new IllegalArgumentException("Not a piece type: " + type);
+        }
+    }
+
+    /**
+     *Return the squares reached by single steps from sq
+     */
+    private static long leaps(int sq, int[][] steps) {
+        long attacks = 0L;
+        for (int[] step : steps) {
+            int file = (sq & 7) + step[0];
+            int rank = (sq >> 3) + step[1];
+            if (file >= 0 && file < 8 && rank >= 0 && rank < 8) {
+                attacks |= 1L << (rank * 8 + file);
+            }
+        }
+        return attacks;
+    }
+
+    /**
+     *Walk every ray from sq until a blocker or the edge of the board
+     */
+    private static long slide(int sq, long occupied, int[][] steps) {
+        long attacks = 0L;
+        for (int[] step : steps) {
+            int file = (sq & 7) + step[0];
+            int rank = (sq >> 3) + step[1];
+            while (file >= 0 && file < 8 && rank >= 0 && rank < 8) {
+                long bit = 1L << (rank * 8 + file);
+                attacks |= bit;
+                if ((occupied & bit) != 0) {
+                    break;
+                }
+                file += step[0];
+                rank += step[1];
+            }
+        }
+        return attacks;
+    }
+
+    /**
+     *Return the squares whose occupancy can change the attacks from sq:
+     *each ray without the last square before the edge
+     */
+    private static long relevant(int sq, int[][] steps) {
+        long mask = 0L;
+        for (int[] step : steps) {
+            int file = (sq & 7) + step[0];
+            int rank = (sq >> 3) + step[1];
+            while (file + step[0] >= 0 && file + step[0] < 8
+                   && rank + step[1] >= 0 && rank + step[1] < 8) {
+                mask |= 1L << (rank * 8 + file);
+                file += step[0];
+                rank += step[1];
+            }
+        }
+        return mask;
+    }
+
+    /**
+     *Store the attacks for every blocker subset of mask in the
+     *table slot its magic product selects
+     */
+    private static void fill(int sq, long mask, long magic, int shift,
+                             long[] table, int[][] steps) {
+        long subset = 0L;
+        do {
+            table[(int) ((subset * magic) >>> shift)] =
+                slide(sq, subset, steps);
+            subset = (subset - mask) & mask;
+        } while (subset != 0);
+    }
+}
@@ -0,0 +1,242 @@
+import java.io.BufferedWriter;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ *Converts whole PGN corpora to full FENs of their final positions,
+ *replaying games on every core with a ForkJoinPool. Results are written one
+ *per line in the same order the games appear in the input. A game that
+ *cannot be replayed is skipped and reported to an ErrorSink, and the
+ *run goes on with the next game; the readers split files at each
+ *[Event tag, so a corrupt game never takes the ones after it down too.
+ *Usage: java BatchConverter (file.pgn | directory) [threads] [errors]
+ *@author Jordan Goldstein
+ *@version 1.0.0
+ */
+public class BatchConverter {
+    private static final int BATCH = 4096;
+    private static final int THRESHOLD = 64;
+    private static final int PLACEMENTS = 1 << 16;
+
+    //one replayer per pool thread, so its cache of final positions is
+    //shared by every game the thread converts
+    private static final ThreadLocal<GameReplayer> REPLAYERS =
+        ThreadLocal.withInitial(() -> new GameReplayer(
+            new FenWriter(new PositionCache<>(PLACEMENTS))));
+
+    /**
+     *Replays games[lo, hi) into fens[lo, hi), splitting the range
+     *until it is small enough to do directly
+     */
+    private static class ConvertTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final String[] games;
+        private final String[] fens;
+        private final String[] failures;
+        private final int lo;
+        private final int hi;
+
+        ConvertTask(String[] games, String[] fens, String[] failures,
+                    int lo, int hi) {
+            this.games = games;
+            this.fens = fens;
+            this.failures = failures;
+            this.lo = lo;
+            this.hi = hi;
+        }
+
+        @Override
+        protected void compute() {
+            if (hi - lo <= THRESHOLD) {
+                GameReplayer replayer = REPLAYERS.get();
+                for (int i = lo; i < hi; i++) {
+                    try {
+                        replayer.replay(games[i]);
+                        fens[i] = replayer.fen();
+                    } catch (RuntimeException e) {
+                        failures[i] = e.toString();
+                    }
+                }
+            } else {
+                int mid = (lo + hi) >>> 1;
+                invokeAll(new ConvertTask(games, fens, failures, lo, mid),
+                          new ConvertTask(games, fens, failures, mid, hi));
+            }
+        }
+    }
+
+    private final ForkJoinPool pool;
+    private final PrintWriter out;
+    private final ErrorSink sink;
+    private long games;
+    private long errors;
+
+    /**
+     *Creates a converter that writes its results to out and reports
+     *the games it skips on stderr
+     *@param pool the pool to replay games on
+     *@param out where to write one FEN per game
+     */
+    public BatchConverter(ForkJoinPool pool, PrintWriter out) {
+        this(pool, out, ErrorSink.printingTo(System.err));
+    }
+
+    /**
+     *Creates a converter that writes its results to out
+     *@param pool the pool to replay games on
+     *@param out where to write one FEN per game
+     *@param sink where to report the games that cannot be replayed
+     */
+    public BatchConverter(ForkJoinPool pool, PrintWriter out,
+                          ErrorSink sink) {
+        this.pool = pool;
+        this.out = out;
+        this.sink = sink;
+    }
+
+    /**
+     *Convert every game in a PGN file, or in every .pgn, .gz and .zip
+     *file of a directory in name order
+     *@param path the file or directory to convert
+     *@throws IOException if a file cannot be read
+     */
+    public void convert(Path path) throws IOException {
+        if (Files.isDirectory(path)) {
+            for (Path file : pgnFiles(path)) {
+                convertFile(file);
+            }
+        } else {
+            convertFile(path);
+        }
+        out.flush();
+    }
+
+    /**
+     *@return the number of games converted so far
+     */
+    public long games() {
+        return games;
+    }
+
+    /**
+     *@return the number of games skipped so far
+     */
+    public long errors() {
+        return errors;
+    }
+
+    /**
+     *Convert every game in one file. The next batch is read while the
+     *pool replays the current one.
+     */
+    private void convertFile(Path file) throws IOException {
+        try (PgnSource reader = PgnSource.open(file)) {
+            long[] offsets = new long[BATCH];
+            long[] nextOffsets = new long[BATCH];
+            String[] batch = readBatch(reader, offsets);
+            while (batch.length > 0) {
+                String[] fens = new String[batch.length];
+                String[] failures = new String[batch.length];
+                ForkJoinTask<Void> task = pool.submit(
+                    new ConvertTask(batch, fens, failures, 0, batch.length));
+                String[] nextBatch = readBatch(reader, nextOffsets);
+                task.join();
+                for (int i = 0; i < fens.length; i++) {
+                    if (failures[i] == null) {
+                        out.println(fens[i]);
+                        games++;
+                    } else {
+                        sink.error(file, offsets[i], failures[i]);
+                        errors++;
+                    }
+                }
+                long[] swap = offsets;
+                offsets = nextOffsets;
+                nextOffsets = swap;
+                batch = nextBatch;
+            }
+        }
+    }
+
+    /**
+     *Read up to BATCH games from reader, noting the offset of each
+     */
+    private static String[] readBatch(PgnSource reader, long[] offsets) {
+        List<String> batch = new ArrayList<>();
+        while (batch.size() < BATCH && reader.hasNext()) {
+            batch.add(reader.next());
+            offsets[batch.size() - 1] = reader.offset();
+        }
+        return batch.toArray(new String[batch.size()]);
+    }
+
+    /**
+     *List the .pgn files in a directory, compressed or not, sorted by
+     *name
+     */
+    private static List<Path> pgnFiles(Path dir) throws IOException {
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream =
+             Files.newDirectoryStream(dir, "*.{pgn,gz,zip}")) {
+            for (Path file : stream) {
+                files.add(file);
+            }
+        }
+        Collections.sort(files);
+        return files;
+    }
+
+    public static void main(String[] args) {
+        int threads = (args.length > 1) ? Integer.parseInt(args[1])
+            : Runtime.getRuntime().availableProcessors();
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        PrintWriter out = new PrintWriter(new BufferedWriter(
+            new OutputStreamWriter(System.out, StandardCharsets.UTF_8)));
+        PrintWriter log = null;
+        ErrorSink sink = ErrorSink.printingTo(System.err);
+        if (args.length > 2) {
+            try {
+                log = new PrintWriter(new BufferedWriter(
+                    new OutputStreamWriter(new FileOutputStream(args[2]),
+                                           StandardCharsets.UTF_8)));
+            } catch (IOException e) {
+                System.err.format("IOException: %s%n", e);
+                System.exit(1);
+            }
+            sink = ErrorSink.printingTo(log);
+        }
+        BatchConverter converter = new BatchConverter(pool, out, sink);
+        PgnMetrics.install();
+        long start = System.nanoTime();
+        try {
+            converter.convert(Paths.get(args[0]));
+        } catch (IOException e) {
+            System.err.format("IOException: %s%n", e);
+            System.exit(1);
+        } finally {
+            pool.shutdown();
+            if (log != null) {
+                log.close();
+            }
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.err.format("%d games in %.2f s (%.0f games/sec) on %d "
+                          + "threads, %d skipped%n", converter.games(),
+                          seconds, converter.games() / seconds, threads,
+                          converter.errors());
+    }
+}
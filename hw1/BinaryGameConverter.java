@@ -0,0 +1,175 @@
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Iterator;
+
+/**
+ *Converts between PGN and the compact binary game format, and replays
+ *binary files straight from their packed moves.
+ *Usage: java BinaryGameConverter topgb games.pgn games.pgb
+ *       java BinaryGameConverter topgn games.pgb games.pgn
+ *       java BinaryGameConverter fen games.pgb
+ *@author Jordan Goldstein
+ *@version 1.0.0
+ */
+public class BinaryGameConverter {
+    private static final int LINE = 79;
+
+    /**
+     *Replay every game of a PGN file and write it in the binary format.
+     *Games with a move that cannot be replayed are skipped and
+     *reported to System.err.
+     *@param pgn the PGN file to read
+     *@param out the binary file to write
+     *@return the number of games written
+     *@throws IOException if a file cannot be read or written
+     */
+    public static long toBinary(Path pgn, Path out) throws IOException {
+        return toBinary(pgn, out, ErrorSink.printingTo(System.err));
+    }
+
+    /**
+     *Replay every game of a PGN file and write it in the binary format
+     *@param pgn the PGN file to read
+     *@param out the binary file to write
+     *@param sink where to report the games that cannot be replayed,
+     *which are skipped
+     *@return the number of games written
+     *@throws IOException if a file cannot be read or written
+     */
+    public static long toBinary(Path pgn, Path out, ErrorSink sink)
+        throws IOException {
+        GameReplayer replayer = new GameReplayer();
+        PgnHeaders headers = new PgnHeaders();
+        short[] moves = new short[256];
+        long games = 0;
+        try (PgnFileReader reader = new PgnFileReader(pgn);
+             BinaryGameWriter writer = new BinaryGameWriter(
+                 Files.newOutputStream(out))) {
+            while (reader.hasNext()) {
+                String game = reader.next();
+                int count = 0;
+                try {
+                    Iterator<Position> plies = replayer.plies(game);
+                    while (plies.hasNext()) {
+                        plies.next();
+                        if (count == moves.length) {
+                            short[] grown = new short[count * 2];
+                            System.arraycopy(moves, 0, grown, 0, count);
+                            moves = grown;
+                        }
+                        moves[count++] = (short) replayer.lastMove();
+                    }
+                } catch (RuntimeException e) {
+                    sink.error(pgn, reader.offset(), e.toString());
+                    continue;
+                }
+                headers.read(game, 0, game.length());
+                writer.write(headers, moves, count);
+                games++;
+            }
+        }
+        return games;
+    }
+
+    /**
+     *Write every game of a binary file back out as PGN
+     *@param binary the binary file to read
+     *@param pgn the PGN file to write
+     *@return the number of games written
+     *@throws IOException if a file cannot be read or written
+     */
+    public static long toPgn(Path binary, Path pgn) throws IOException {
+        SanWriter san = new SanWriter();
+        Position position = new Position();
+        StringBuilder sb = new StringBuilder(4096);
+        long games = 0;
+        try (BinaryGameReader reader = new BinaryGameReader(
+                 Files.newInputStream(binary));
+             Writer out = Files.newBufferedWriter(pgn)) {
+            while (reader.next()) {
+                sb.setLength(0);
+                PgnHeaders headers = reader.headers();
+                for (int i = 0; i < headers.size(); i++) {
+                    sb.append('[').append(headers.name(i)).append(" \"");
+                    appendEscaped(headers.value(i), sb);
+                    sb.append("\"]\n");
+                }
+                sb.append('\n');
+                position.reset();
+                int lineStart = sb.length();
+                for (int i = 0; i < reader.moveCount(); i++) {
+                    int tokenStart = sb.length();
+                    if (i % 2 == 0) {
+                        sb.append(i / 2 + 1).append(". ");
+                    }
+                    int move = reader.move(i);
+                    san.append(position, move, sb);
+                    position.move(Move.from(move), Move.to(move),
+                                  Move.promotion(move));
+                    if (sb.length() - lineStart > LINE
+                        && tokenStart > lineStart) {
+                        sb.setCharAt(tokenStart - 1, '\n');
+                        lineStart = tokenStart;
+                    }
+                    sb.append(' ');
+                }
+                sb.append(headers.get("Result", "*")).append("\n\n");
+                out.append(sb);
+                games++;
+            }
+        }
+        return games;
+    }
+
+    /**
+     *Escape quotes and backslashes in a tag value
+     */
+    private static void appendEscaped(String value, StringBuilder sb) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                sb.append('\\');
+            }
+            sb.append(c);
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        long start = System.nanoTime();
+        long games;
+        if (args.length == 3 && args[0].equals("topgb")) {
+            games = toBinary(Paths.get(args[1]), Paths.get(args[2]));
+        } else if (args.length == 3 && args[0].equals("topgn")) {
+            games = toPgn(Paths.get(args[1]), Paths.get(args[2]));
+        } else if (args.length == 2 && args[0].equals("fen")) {
+            FenWriter fen = new FenWriter();
+            PrintWriter out = new PrintWriter(new BufferedWriter(
+                new OutputStreamWriter(System.out, StandardCharsets.UTF_8)));
+            games = 0;
+            try (BinaryGameReader reader = new BinaryGameReader(
+                     Files.newInputStream(Paths.get(args[1])))) {
+                while (reader.next()) {
+                    out.append(fen.encode(reader.replay())).append('\n');
+                    games++;
+                }
+            }
+            out.flush();
+        } else {
+            System.err.println("Usage: java BinaryGameConverter (topgb "
+                               + "in.pgn out.pgb | topgn in.pgb out.pgn "
+                               + "| fen in.pgb)");
+            System.exit(1);
+            return;
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.err.format("%d games in %.2f s (%.0f games/sec)%n", games,
+                          seconds, games / seconds);
+    }
+}
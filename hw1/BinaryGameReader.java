@@ -0,0 +1,138 @@
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ *Reads games written by BinaryGameWriter one at a time and replays
+ *them straight from their packed moves, with no SAN to resolve.
+ *The headers and move buffer are reused from game to game.
+ *@author Jordan Goldstein
+ *@version 1.0.0
+ */
+public class BinaryGameReader implements Closeable {
+    private final DataInputStream in;
+    private final List<String> names = new ArrayList<>();
+    private final PgnHeaders headers = new PgnHeaders();
+    private final Position position = new Position();
+    private short[] moves = new short[256];
+    private int count;
+    private byte[] bytes = new byte[256];
+
+    /**
+     *Creates a reader and checks the file header
+     *@param stream where to read the games from
+     *@throws IOException if the stream is not a binary game file
+     */
+    public BinaryGameReader(InputStream stream) throws IOException {
+        in = new DataInputStream(new BufferedInputStream(stream, 1 << 16));
+        if (in.readInt() != BinaryGameWriter.MAGIC
+            || in.readUnsignedByte() != BinaryGameWriter.VERSION) {
+            throw new IOException("Not a binary game file");
+        }
+    }
+
+    /**
+     *Read the next game
+     *@return false if there are no more games
+     *@throws IOException if the game cannot be read
+     */
+    public boolean next() throws IOException {
+        int first = in.read();
+        if (first < 0) {
+            return false;
+        }
+        headers.clear();
+        int tags = readVarint(first);
+        for (int i = 0; i < tags; i++) {
+            int code = readVarint(in.readUnsignedByte());
+            if (code == names.size()) {
+                names.add(readString());
+            }
+            headers.put(names.get(code), readString());
+        }
+        count = readVarint(in.readUnsignedByte());
+        if (moves.length < count) {
+            moves = new short[Math.max(count, moves.length * 2)];
+        }
+        for (int i = 0; i < count; i++) {
+            moves[i] = in.readShort();
+        }
+        return true;
+    }
+
+    /**
+     *@return the tag pairs of the current game
+     */
+    public PgnHeaders headers() {
+        return headers;
+    }
+
+    /**
+     *@return the number of moves in the current game
+     */
+    public int moveCount() {
+        return count;
+    }
+
+    /**
+     *@param i the index of a move in the current game
+     *@return the move, packed by Move.pack
+     */
+    public int move(int i) {
+        return moves[i] & 0xFFFF;
+    }
+
+    /**
+     *Play every move of the current game from the initial position
+     *@return the final position, owned by this reader
+     */
+    public Position replay() {
+        position.reset();
+        for (int i = 0; i < count; i++) {
+            int move = moves[i];
+            position.move(Move.from(move), Move.to(move),
+                          Move.promotion(move));
+        }
+        return position;
+    }
+
+    /**
+     *Close the underlying stream
+     */
+    public void close() throws IOException {
+        in.close();
+    }
+
+    private String readString() throws IOException {
+        int length = readVarint(in.readUnsignedByte());
+        if (bytes.length < length) {
+            bytes = new byte[Math.max(length, bytes.length * 2)];
+        }
+        in.readFully(bytes, 0, length);
+        return new String(bytes, 0, length, StandardCharsets.UTF_8);
+    }
+
+    /**
+     *Finish reading a varint whose first byte has already been read
+     */
+    private int readVarint(int first) throws IOException {
+        int value = first & 0x7F;
+        int shift = 7;
+        int b = first;
+        while ((b & 0x80) != 0) {
+            b = in.read();
+            if (b < 0) {
+                throw new EOFException();
+            }
+            value |= (b & 0x7F) << shift;
+            shift += 7;
+        }
+        return value;
+    }
+}
@@ -0,0 +1,87 @@
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ *Writes games in the compact binary game format.
+ *The stream starts with the magic number and a version byte. Each
+ *game is then its tag pairs followed by its moves: a varint tag count,
+ *each tag as a varint name code and a length-prefixed UTF-8 value,
+ *then a varint move count and every move packed into 16 bits by
+ *Move.pack. A tag name is spelled out the first time it appears and
+ *afterwards referred to by its code, so names are stored once per file.
+ *@author Jordan Goldstein
+ *@version 1.0.0
+ */
+public class BinaryGameWriter implements Closeable {
+    /**"PGNB", the first four bytes of every binary game file*/
+    public static final int MAGIC = 0x50474E42;
+    public static final int VERSION = 1;
+
+    private final DataOutputStream out;
+    private final Map<String, Integer> names = new HashMap<>();
+
+    /**
+     *Creates a writer and writes the file header
+     *@param stream where to write the games
+     *@throws IOException if the header cannot be written
+     */
+    public BinaryGameWriter(OutputStream stream) throws IOException {
+        out = new DataOutputStream(new BufferedOutputStream(stream, 1 << 16));
+        out.writeInt(MAGIC);
+        out.writeByte(VERSION);
+    }
+
+    /**
+     *Write one game
+     *@param headers the game's tag pairs
+     *@param moves the game's moves, packed by Move.pack
+     *@param count how many of moves to write
+     *@throws IOException if the game cannot be written
+     */
+    public void write(PgnHeaders headers, short[] moves, int count)
+        throws IOException {
+        writeVarint(headers.size());
+        for (int i = 0; i < headers.size(); i++) {
+            Integer code = names.get(headers.name(i));
+            if (code == null) {
+                writeVarint(names.size());
+                writeString(headers.name(i));
+                names.put(headers.name(i), names.size());
+            } else {
+                writeVarint(code);
+            }
+            writeString(headers.value(i));
+        }
+        writeVarint(count);
+        for (int i = 0; i < count; i++) {
+            out.writeShort(moves[i]);
+        }
+    }
+
+    /**
+     *Flush and close the underlying stream
+     */
+    public void close() throws IOException {
+        out.close();
+    }
+
+    private void writeString(String s) throws IOException {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        writeVarint(bytes.length);
+        out.write(bytes);
+    }
+
+    private void writeVarint(int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+}
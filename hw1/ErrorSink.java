@@ -0,0 +1,51 @@
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.nio.file.Path;
+
+/**
+ *Where the games that could not be converted are reported, so one
+ *corrupt game costs a line in a log instead of the whole run. Each
+ *report names the file, the byte offset of the game in it and why it
+ *was skipped, which is enough to find the game again later.
+ *@author Jordan Goldstein
+ *@version 1.0.0
+ */
+public interface ErrorSink {
+    /**
+     *Record a game that was skipped. Called from many threads at once,
+     *so implementations must be thread safe.
+     *@param file the file the game was read from
+     *@param offset the byte offset of the game in the file, counted in
+     *the uncompressed text
+     *@param reason why the game was skipped
+     */
+    void error(Path file, long offset, String reason);
+
+    /**
+     *@param out where to print
+     *@return a sink that prints one "file:offset: reason" line per
+     *error to out
+     */
+    static ErrorSink printingTo(PrintStream out) {
+        return (file, offset, reason) -> {
+            synchronized (out) {
+                out.format("%s:%d: %s%n", file, offset, reason);
+            }
+        };
+    }
+
+    /**
+     *@param out where to print, flushed after every error so the log
+     *is complete even if the run is killed
+     *@return a sink that prints one "file:offset: reason" line per
+     *error to out
+     */
+    static ErrorSink printingTo(PrintWriter out) {
+        return (file, offset, reason) -> {
+            synchronized (out) {
+                out.format("%s:%d: %s%n", file, offset, reason);
+                out.flush();
+            }
+        };
+    }
+}
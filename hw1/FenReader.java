@@ -0,0 +1,92 @@
+/**
+ *Sets up positions from Forsyth-Edwards Notation (FEN), the inverse
+ *of FenWriter. The move counters may be left off, as they often are
+ *in the FEN tag of hand-written games.
+ *@see http://www.saremba.de/chessgml/standards/pgn/pgn-complete.htm#c16.1
+ *@author Jordan Goldstein
+ *@version 1.0.0
+ */
+public final class FenReader {
+    private FenReader() {
+    }
+
+    /**
+     *@param fen a position in FEN
+     *@return a new position set up from fen
+     *@throws PgnFormatException if fen is malformed
+     */
+    public static Position read(String fen) {
+        Position position = new Position();
+        read(fen, position);
+        return position;
+    }
+
+    /**
+     *Set position up from fen, replacing whatever was on it
+     *@param fen a position in FEN
+     *@param position the position to set up
+     *@throws PgnFormatException if fen is malformed
+     */
+    public static void read(String fen, Position position) {
+        String[] fields = fen.trim().split("\\s+");
+        if (fields.length < 4) {
+            throw new PgnFormatException("FEN needs at least 4 fields: "
+                                         + fen);
+        }
+        position.clear();
+        int rank = 7;
+        int file = 0;
+        for (int i = 0; i < fields[0].length(); i++) {
+            char c = fields[0].charAt(i);
+            int piece = Position.PIECE_CHARS.indexOf(c);
+            if (c == '/') {
+                rank--;
+                file = 0;
+            } else if (c >= '1' && c <= '8') {
+                file += c - '0';
+            } else if (piece >= 0 && file < 8 && rank >= 0) {
+                position.put(piece, Position.square(file++, rank));
+            } else {
+                throw new PgnFormatException("Bad piece placement: " + fen);
+            }
+        }
+        if (rank != 0 || position.pieces(Position.WHITE, Position.KING) == 0
+            || position.pieces(Position.BLACK, Position.KING) == 0) {
+            throw new PgnFormatException("Bad piece placement: " + fen);
+        }
+        if (!fields[1].equals("w") && !fields[1].equals("b")) {
+            throw new PgnFormatException("Bad side to move: " + fen);
+        }
+        position.setSideToMove(fields[1].equals("w") ? Position.WHITE
+                               : Position.BLACK);
+        int rights = 0;
+        if (!fields[2].equals("-")) {
+            for (int i = 0; i < fields[2].length(); i++) {
+                int right = "KQkq".indexOf(fields[2].charAt(i));
+                if (right < 0) {
+                    throw new PgnFormatException("Bad castling rights: "
+                                                 + fen);
+                }
+                rights |= 1 << right;
+            }
+        }
+        position.setCastlingRights(rights);
+        if (!fields[3].equals("-")) {
+            String ep = fields[3];
+            if (ep.length() != 2 || ep.charAt(0) < 'a' || ep.charAt(0) > 'h'
+                || ep.charAt(1) < '1' || ep.charAt(1) > '8') {
+                throw new PgnFormatException("Bad en passant square: "
+                                             + fen);
+            }
+            position.setEpSquare(Position.square(ep.charAt(0) - 'a',
+                                                 ep.charAt(1) - '1'));
+        }
+        try {
+            position.setMoveCounters(
+                (fields.length > 4) ? Integer.parseInt(fields[4]) : 0,
+                (fields.length > 5) ? Integer.parseInt(fields[5]) : 1);
+        } catch (NumberFormatException e) {
+            throw new PgnFormatException("Bad move counters: " + fen);
+        }
+    }
+}
@@ -0,0 +1,152 @@
+/**
+ *Encodes positions in Forsyth-Edwards Notation (FEN) with all six
+ *fields. Every encoding goes into the same StringBuilder, so a writer
+ *emitting one FEN per ply allocates nothing but the Strings it is
+ *asked to hand out. A writer may also be given a PositionCache, in
+ *which case the piece placement of each position is built once and
+ *looked up by Zobrist hash after that; corpora end in the same
+ *positions over and over, through duplicate games and common mates.
+ *@see http://www.saremba.de/chessgml/standards/pgn/pgn-complete.htm#c16.1
+ *@author Jordan Goldstein
+ *@version 1.0.0
+ */
+public class FenWriter {
+    private final StringBuilder sb = new StringBuilder(96);
+    private final PositionCache<String> placements;
+
+    /**
+     *Creates a writer that encodes every position from scratch
+     */
+    public FenWriter() {
+        this(null);
+    }
+
+    /**
+     *Creates a writer that caches piece placements by position hash
+     *@param placements where to cache them, or null not to
+     */
+    public FenWriter(PositionCache<String> placements) {
+        this.placements = placements;
+    }
+
+    /**
+     *Encode position into the reusable buffer
+     *@param position the position to encode
+     *@return the buffer holding the FEN, valid until the next call
+     */
+    public StringBuilder encode(Position position) {
+        if (placements == null) {
+            sb.setLength(0);
+            append(position, sb);
+            return sb;
+        }
+        String placement = placement(position);
+        sb.setLength(0);
+        sb.append(placement);
+        appendState(position, sb);
+        return sb;
+    }
+
+    /**
+     *@param position the position to encode
+     *@return the full FEN of position
+     */
+    public String fen(Position position) {
+        return encode(position).toString();
+    }
+
+    /**
+     *@param position the position to encode
+     *@return the piece placement field of the FEN of position
+     */
+    public String placement(Position position) {
+        String placement = (placements == null) ? null
+            : placements.get(position.hash());
+        if (placement == null) {
+            sb.setLength(0);
+            appendPlacement(position, sb);
+            placement = sb.toString();
+            if (placements != null) {
+                placements.put(position.hash(), placement);
+            }
+        }
+        return placement;
+    }
+
+    /**
+     *Append the full FEN of position to out
+     *@param position the position to encode
+     *@param out where to write the FEN
+     */
+    public static void append(Position position, StringBuilder out) {
+        appendPlacement(position, out);
+        appendState(position, out);
+    }
+
+    /**
+     *Append the five fields that follow the piece placement
+     */
+    private static void appendState(Position position, StringBuilder out) {
+        out.append(' ');
+        out.append(position.sideToMove() == Position.WHITE ? 'w' : 'b');
+        out.append(' ');
+        int rights = position.castlingRights();
+        if (rights == 0) {
+            out.append('-');
+        } else {
+            String letters = "KQkq";
+            for (int i = 0; i < 4; i++) {
+                if ((rights & (1 << i)) != 0) {
+                    out.append(letters.charAt(i));
+                }
+            }
+        }
+        out.append(' ');
+        int ep = position.epSquare();
+        if (ep == Position.NO_SQUARE) {
+            out.append('-');
+        } else {
+            appendSquare(ep, out);
+        }
+        out.append(' ').append(position.halfmoveClock());
+        out.append(' ').append(position.fullmoveNumber());
+    }
+
+    /**
+     *Append the piece placement field of the FEN of position to out
+     *@param position the position to encode
+     *@param out where to write the field
+     */
+    public static void appendPlacement(Position position, StringBuilder out) {
+        for (int rank = 7; rank >= 0; rank--) {
+            int empty = 0;
+            for (int file = 0; file < 8; file++) {
+                int piece = position.pieceAt(Position.square(file, rank));
+                if (piece == Position.EMPTY) {
+                    empty++;
+                } else {
+                    if (empty > 0) {
+                        out.append((char) ('0' + empty));
+                        empty = 0;
+                    }
+                    out.append(Position.PIECE_CHARS.charAt(piece));
+                }
+            }
+            if (empty > 0) {
+                out.append((char) ('0' + empty));
+            }
+            if (rank > 0) {
+                out.append('/');
+            }
+        }
+    }
+
+    /**
+     *Append the algebraic name of sq, such as "e3", to out
+     *@param sq the square to name
+     *@param out where to write the name
+     */
+    public static void appendSquare(int sq, StringBuilder out) {
+        out.append((char) ('a' + (sq & 7))).append((char) ('1' + (sq >> 3)));
+    }
+}
@@ -0,0 +1,462 @@
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ *Replays the moves of PGN games on a bitboard Position of its own.
+ *Each instance holds its own position, so separate instances can
+ *replay games concurrently without any locking.
+ *@author Jordan Goldstein
+ *@version 1.0.0
+ */
+public class GameReplayer {
+    private final Position position = new Position();
+    private final PgnHeaders headers = new PgnHeaders();
+    private final MoveTokenizer tokenizer = new MoveTokenizer();
+    private final FenWriter writer;
+    private final int[] moves = new int[MoveGenerator.MAX_MOVES];
+    private char[] text = new char[4096];
+    private int lastMove;
+
+    /**
+     *Creates a replayer set to the initial position
+     */
+    public GameReplayer() {
+        this(new FenWriter());
+    }
+
+    /**
+     *Creates a replayer set to the initial position
+     *@param writer what to encode positions with, such as one that
+     *caches them
+     */
+    public GameReplayer(FenWriter writer) {
+        this.writer = writer;
+        reset();
+    }
+
+    /**
+     *Set the board back to the initial position
+     */
+    public void reset() {
+        position.reset();
+    }
+
+    /**
+     *@return the tag pairs of the game last replayed
+     */
+    public PgnHeaders headers() {
+        return headers;
+    }
+
+    /**
+     *@return the position being replayed on
+     */
+    public Position position() {
+        return position;
+    }
+
+    /**
+     * Play out the moves in game from the initial position and return a
+     * String with the game's final position in Forsyth-Edwards Notation.
+     *
+     * @param game a `String` containing a PGN-formatted chess game or opening
+     * @return the piece placement field of the game's final position in FEN.
+     */
+    public String finalPosition(String game) {
+        replay(game);
+        return placement();
+    }
+
+    /**
+     *Play out every move in game from the initial position
+     *@param game a `String` containing a PGN-formatted chess game or opening
+     *@return the final position, owned by this replayer
+     */
+    public Position replay(String game) {
+        PgnMetrics.Recorder metrics = PgnMetrics.recorder();
+        load(game, metrics);
+        long start = System.nanoTime();
+        int count = tokenizer.tokenize(text, headers.movetextStart(),
+                                       game.length());
+        long tokenized = System.nanoTime();
+        metrics.time(PgnMetrics.TOKENIZE, tokenized - start);
+        try {
+            for (int i = 0; i < count; i++) {
+                play(text, tokenizer.start(i), tokenizer.end(i));
+            }
+        } catch (PgnFormatException e) {
+            metrics.error();
+            throw e;
+        }
+        metrics.time(PgnMetrics.REPLAY, System.nanoTime() - tokenized);
+        metrics.game(count);
+        return position;
+    }
+
+    /**
+     *Step through game one ply at a time. Each call to next() plays
+     *one more move and returns this replayer's position, so nothing is
+     *copied per ply and a caller that stops early only pays for the
+     *moves it read. Use fen() for the FEN of the current ply.
+     *The game is counted in PgnMetrics as soon as it is loaded, and
+     *each ply and the time spent tokenizing and replaying it are
+     *added as they are read, so a caller that stops early still shows.
+     *Such games are left out of the per-game percentiles.
+     *The iterator is invalidated by any other use of this replayer.
+     *@param game a `String` containing a PGN-formatted chess game or opening
+     *@return an iterator over the position after each move
+     */
+    public Iterator<Position> plies(String game) {
+        PgnMetrics.Recorder metrics = PgnMetrics.recorder();
+        load(game, metrics);
+        //its plies are counted one at a time as they are played
+        metrics.game(0);
+        return new Iterator<Position>() {
+            private boolean advanced;
+            private boolean more;
+
+            public boolean hasNext() {
+                if (!advanced) {
+                    long start = System.nanoTime();
+                    more = tokenizer.next();
+                    metrics.add(PgnMetrics.TOKENIZE, System.nanoTime() - start);
+                    advanced = true;
+                }
+                return more;
+            }
+
+            public Position next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                advanced = false;
+                long start = System.nanoTime();
+                try {
+                    play(text, tokenizer.start(), tokenizer.end());
+                } catch (PgnFormatException e) {
+                    metrics.error();
+                    throw e;
+                }
+                metrics.add(PgnMetrics.REPLAY, System.nanoTime() - start);
+                metrics.ply();
+                return position;
+            }
+        };
+    }
+
+    /**
+     *Same as plies(game), as a sequential stream
+     *@param game a `String` containing a PGN-formatted chess game or opening
+     *@return a stream of the position after each move
+     */
+    public Stream<Position> plyStream(String game) {
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(
+            plies(game), Spliterator.ORDERED | Spliterator.NONNULL), false);
+    }
+
+    /**
+     *Reset the board, copy game into the text buffer, parse its tags
+     *and point the tokenizer at its movetext
+     */
+    private void load(String game, PgnMetrics.Recorder metrics) {
+        reset();
+        int length = game.length();
+        if (text.length < length) {
+            text = new char[Math.max(length, text.length * 2)];
+        }
+        game.getChars(0, length, text, 0);
+        long start = System.nanoTime();
+        headers.read(game, 0, length);
+        metrics.time(PgnMetrics.TAGS, System.nanoTime() - start);
+        tokenizer.reset(text, headers.movetextStart(), length);
+    }
+
+    /**
+     *Apply a single SAN move to the board
+     *@param move the move to be made, such as "Nbd7" or "exd8=Q+"
+     */
+    public void play(String move) {
+        int length = move.length();
+        if (text.length < length) {
+            text = new char[Math.max(length, text.length * 2)];
+        }
+        move.getChars(0, length, text, 0);
+        play(text, 0, length);
+    }
+
+    /**
+     *Apply the SAN move in san[from, to) to the board for the side to move
+     *@param san the characters holding the move
+     *@param from the index the move starts at
+     *@param to the index the move ends at
+     */
+    public void play(char[] san, int from, int to) {
+        int color = position.sideToMove();
+        int end = to;
+        while (end > from && isSuffix(san[end - 1])) {
+            end--;
+        }
+        if (end > from && (san[from] == 'O' || san[from] == '0')) {
+            //only the move generator knows the rights, the squares in
+            //between and whether the king passes through check
+            int king = position.king(color);
+            int move = MoveGenerator.resolve(position, 1L << king,
+                (end - from >= 5) ? king - 2 : king + 2, Position.PAWN,
+                moves);
+            if (move < 0) {
+                throw new PgnFormatException("Illegal castling: "
+                    + new String(san, from, to - from));
+            }
+            lastMove = move;
+            position.make(lastMove);
+            return;
+        }
+        int promotion = Position.PAWN;
+        if (end - from >= 3 && isPromotionPiece(san[end - 1])
+            && (san[end - 2] == '=' || isRank(san[end - 2]))) {
+            promotion = typeOf(san[end - 1]);
+            end -= (san[end - 2] == '=') ? 2 : 1;
+        }
+        if (end - from < 2 || !isFile(san[end - 2]) || !isRank(san[end - 1])) {
+            throw new PgnFormatException("Malformed move: "
+                + new String(san, from, to - from));
+        }
+        int target = Position.square(san[end - 2] - 'a', san[end - 1] - '1');
+        int type = Position.PAWN;
+        int i = from;
+        if (san[i] >= 'B' && san[i] <= 'R' && typeOf(san[i]) > 0) {
+            type = typeOf(san[i++]);
+        }
+        long candidates = position.pieces(color, type);
+        if (type == Position.PAWN && i == end - 2) {
+            //a pawn push names no file of its own, so it stays on this one
+            candidates &= 0x0101010101010101L << (target & 7);
+        }
+        for (; i < end - 2; i++) {
+            if (isFile(san[i])) {
+                candidates &= 0x0101010101010101L << (san[i] - 'a');
+            } else if (isRank(san[i])) {
+                candidates &= 0xFFL << (8 * (san[i] - '1'));
+            }
+        }
+        int origin = choose(type, candidates, target, promotion);
+        if (origin < 0) {
+            throw new PgnFormatException("No piece can play "
+                + new String(san, from, to - from));
+        }
+        lastMove = Move.pack(origin, target, promotion);
+        position.make(lastMove);
+    }
+
+    /**
+     *Take back the last move played, so a game can be stepped through
+     *backward or a side line tried from any earlier ply. Nothing is
+     *copied or allocated.
+     *@throws IllegalStateException if no move has been played
+     */
+    public void undo() {
+        position.unmake();
+        lastMove = position.lastMove();
+    }
+
+    /**
+     *@return the last move played, packed by Move.pack, or -1 once
+     *every move has been taken back
+     */
+    public int lastMove() {
+        return lastMove;
+    }
+
+    /**
+     *Return the piece placement field of the FEN for the current board
+     */
+    public String placement() {
+        long start = System.nanoTime();
+        String placement = writer.placement(position);
+        PgnMetrics.recorder().time(PgnMetrics.FEN, System.nanoTime() - start);
+        return placement;
+    }
+
+    /**
+     *Return the full FEN of the current position
+     */
+    public String fen() {
+        long start = System.nanoTime();
+        String fen = writer.fen(position);
+        PgnMetrics.recorder().time(PgnMetrics.FEN, System.nanoTime() - start);
+        return fen;
+    }
+
+    /**
+     *Pick the one square in candidates whose piece can move to target
+     *without leaving its own king in check
+     *return -1 if there is none, or if more than one could
+     */
+    private int choose(int type, long candidates, int target,
+                       int promotion) {
+        long able = (type == Position.PAWN) ? pawnOrigins(candidates, target)
+            : candidates & Attacks.of(type, target, position.occupied());
+        if (able == 0) {
+            return -1;
+        }
+        //even a lone piece may be pinned, ignore a check or land on a
+        //piece of its own, which only the legal moves rule out
+        int move = MoveGenerator.resolve(position, able, target, promotion,
+                                         moves);
+        return (move < 0) ? -1 : Move.from(move);
+    }
+
+    /**
+     *Check whether the piece of the given type on from can move to to
+     *on the current board, ignoring checks
+     */
+    private boolean canReach(int type, int from, int to) {
+        if (type == Position.PAWN) {
+            return pawnOrigins(1L << from, to) != 0;
+        }
+        return (Attacks.of(type, from, position.occupied()) & (1L << to)) != 0;
+    }
+
+    /**
+     *Return the squares in candidates holding a pawn of the side to
+     *move that can push or capture to target
+     */
+    private long pawnOrigins(long candidates, int target) {
+        int color = position.sideToMove();
+        int back = (color == Position.WHITE) ? -8 : 8;
+        int one = target + back;
+        if (one < 0 || one > 63) {
+            return 0L;
+        }
+        int victim = position.pieceAt(target);
+        if (victim != Position.EMPTY) {
+            return (victim / 6 == color) ? 0L
+                : candidates & Attacks.pawn(color ^ 1, target);
+        }
+        long origins = 1L << one;
+        int doubleRank = (color == Position.WHITE) ? 3 : 4;
+        if ((target >> 3) == doubleRank
+            && position.pieceAt(one) == Position.EMPTY) {
+            origins |= 1L << (one + back);
+        }
+        if (target == position.epSquare()) {
+            origins |= Attacks.pawn(color ^ 1, target);
+        }
+        return candidates & origins;
+    }
+
+    /**
+     *Handle special moves
+     */
+    public void doSpecialMove(String move, int turn) {
+        position.setSideToMove(turn % 2);
+        play(move);
+    }
+
+    /**
+     *Find the coordinates of the one piece that
+     *can legally make the move that is taking place
+     *where piece is the type of piece to be moved
+     *and coords is an array of all the corrdinates
+     *of pieces of that type
+     *and moveCoords is the coordinates to move to
+     *and move is the String of the Move
+     *and moveNum is the turn number
+     */
+    public int[] choosePiece(char piece, int[][] coords,
+                             int[] moveCoords, String move,
+                             int moveNum) {
+        int[] coordsOfAble = {6, 4};
+        int type = typeOf(Character.toUpperCase(piece));
+        int target = toSquare(moveCoords[0], moveCoords[1]);
+        position.setSideToMove(moveNum % 2);
+        for (int[] i : coords) {
+            int from = toSquare(i[0], i[1]);
+            coordsOfAble = (canReach(type, from, target)
+                            && !position.exposesKing(from, target)) ? i
+                : coordsOfAble;
+        }
+        return coordsOfAble;
+    }
+
+    /**
+     *find all pieces of the type to be moved
+     *where piece is the type of piece to find
+     *return the coordinates of the pieces
+     */
+    public int[][] findPieces(char piece) {
+        long bits = position.pieces(Character.isUpperCase(piece)
+                                    ? Position.WHITE : Position.BLACK,
+                                    typeOf(Character.toUpperCase(piece)));
+        int[][] coordinates = new int[Long.bitCount(bits)][];
+        for (int i = 0; bits != 0; bits &= bits - 1, i++) {
+            int sq = Long.numberOfTrailingZeros(bits);
+            coordinates[i] = new int[] {7 - (sq >> 3), sq & 7};
+        }
+        return coordinates;
+    }
+
+    /**
+     *Check to see if a pawn can move to the provided spot
+     * r is start row, c is start column
+     *mr is move row, mc is move column, t is turn, a is attack
+     */
+    public boolean canPawnMove(int r, int c, int mr, int mc,
+                               int t, boolean a) {
+        position.setSideToMove(t % 2);
+        return (c != mc) == a && canReach(Position.PAWN, toSquare(r, c),
+                                          toSquare(mr, mc));
+    }
+
+    /**
+     *Check to see if a Queen can move to the provided spot
+     *r is start row, c is start column
+     *mr is move row, mc is move column
+     */
+    public boolean canQueenMove(int r, int c, int mr, int mc) {
+        return canReach(Position.QUEEN, toSquare(r, c), toSquare(mr, mc));
+    }
+
+    /**
+     *Check to see if a Rook can move to the provided spot
+     * r is start row, c is start column
+     *mr is move row, mc is move column
+     */
+    public boolean canRookMove(int r, int c, int mr, int mc) {
+        return canReach(Position.ROOK, toSquare(r, c), toSquare(mr, mc));
+    }
+
+    /**
+     *Convert a row (0 is the eighth rank) and column to a square
+     */
+    private static int toSquare(int row, int col) {
+        return Position.square(col, 7 - row);
+    }
+
+    /**
+     *Return the piece type named by a SAN letter, or -1
+     */
+    private static int typeOf(char c) {
+        return "PNBRQK".indexOf(c);
+    }
+
+    private static boolean isPromotionPiece(char c) {
+        return c == 'N' || c == 'B' || c == 'R' || c == 'Q';
+    }
+
+    private static boolean isFile(char c) {
+        return c >= 'a' && c <= 'h';
+    }
+
+    private static boolean isRank(char c) {
+        return c >= '1' && c <= '8';
+    }
+
+    private static boolean isSuffix(char c) {
+        return c == '+' || c == '#' || c == '!' || c == '?';
+    }
+}
@@ -0,0 +1,46 @@
+/**
+ *Packs a move into 16 bits: the from square in bits 0-5, the to
+ *square in bits 6-11 and the promotion piece type in bits 12-14
+ *(PAWN, which is 0, for no promotion). Castling is packed as the
+ *king's two square move.
+ *@author Jordan Goldstein
+ *@version 1.0.0
+ */
+public final class Move {
+    private Move() {
+    }
+
+    /**
+     *@param from the square the piece starts on
+     *@param to the square the piece moves to
+     *@param promotion the type promoted to, or PAWN if there is none
+     *@return the packed move
+     */
+    public static int pack(int from, int to, int promotion) {
+        return from | to << 6 | promotion << 12;
+    }
+
+    /**
+     *@param move a packed move
+     *@return the square the piece starts on
+     */
+    public static int from(int move) {
+        return move & 63;
+    }
+
+    /**
+     *@param move a packed move
+     *@return the square the piece moves to
+     */
+    public static int to(int move) {
+        return (move >>> 6) & 63;
+    }
+
+    /**
+     *@param move a packed move
+     *@return the type promoted to, or PAWN if there is none
+     */
+    public static int promotion(int move) {
+        return (move >>> 12) & 7;
+    }
+}
@@ -0,0 +1,299 @@
+/**
+ *Generates the fully legal moves of a position: every move the side
+ *to move may play, with pins, checks, castling out of or through
+ *check and en passant captures that would expose the king all
+ *accounted for. Moves are written as Move.pack values into a caller
+ *supplied array, which never needs more than MAX_MOVES entries.
+ *Pinned pieces are kept on their pin line and, when in check, moves
+ *are limited to capturing or blocking the checker, so only the king
+ *and en passant captures are ever tested square by square.
+ *@author Jordan Goldstein
+ *@version 1.0.0
+ */
+public final class MoveGenerator {
+    /**More than the number of legal moves in any chess position*/
+    public static final int MAX_MOVES = 256;
+
+    //BETWEEN[a][b] is the squares strictly between two squares on a
+    //line and LINE[a][b] the whole line through them; 0 if not aligned
+    private static final long[][] BETWEEN = new long[64][64];
+    private static final long[][] LINE = new long[64][64];
+
+    static {
+        for (int a = 0; a < 64; a++) {
+            for (int b = 0; b < 64; b++) {
+                long ends = (1L << a) | (1L << b);
+                if (a == b) {
+                    continue;
+                }
+                if ((Attacks.rook(a, 0L) & (1L << b)) != 0) {
+                    BETWEEN[a][b] = Attacks.rook(a, 1L << b)
+                        & Attacks.rook(b, 1L << a);
+                    LINE[a][b] = (Attacks.rook(a, 0L) & Attacks.rook(b, 0L))
+                        | ends;
+                } else if ((Attacks.bishop(a, 0L) & (1L << b)) != 0) {
+                    BETWEEN[a][b] = Attacks.bishop(a, 1L << b)
+                        & Attacks.bishop(b, 1L << a);
+                    LINE[a][b] = (Attacks.bishop(a, 0L)
+                                  & Attacks.bishop(b, 0L)) | ends;
+                }
+            }
+        }
+    }
+
+    private MoveGenerator() {
+    }
+
+    /**
+     *Write every legal move of position into moves
+     *@param position the position to generate moves for
+     *@param moves where to write the moves, at least MAX_MOVES long
+     *@return the number of moves written
+     */
+    public static int generate(Position position, int[] moves) {
+        return generate(position, -1L, -1L, moves);
+    }
+
+    /**
+     *Write the legal moves of position from a square in from to a
+     *square in to into moves. Checks and pins are still worked out for
+     *the whole board, but only the pieces on from are moved, which
+     *makes checking one move much cheaper than generating them all.
+     *@param position the position to generate moves for
+     *@param from the squares the moves may start on
+     *@param to the squares the moves may end on
+     *@param moves where to write the moves, at least MAX_MOVES long
+     *@return the number of moves written
+     */
+    public static int generate(Position position, long from, long to,
+                               int[] moves) {
+        int us = position.sideToMove();
+        int them = us ^ 1;
+        long own = position.occupancy(us);
+        long occ = position.occupied();
+        int king = position.king(us);
+        int n = 0;
+        boolean kingMoves = (from & (1L << king)) != 0;
+        long kingless = occ & ~(1L << king);
+        long steps = kingMoves ? Attacks.king(king) & ~own & to : 0L;
+        for (; steps != 0; steps &= steps - 1) {
+            int sq = Long.numberOfTrailingZeros(steps);
+            if (!attacked(position, sq, them, kingless)) {
+                moves[n++] = Move.pack(king, sq, Position.PAWN);
+            }
+        }
+        long checkers = attackers(position, king, them, occ);
+        if ((checkers & (checkers - 1)) != 0) {
+            //in double check only the king can move
+            return n;
+        }
+        long allowed = ~own & to;
+        if (checkers != 0) {
+            int checker = Long.numberOfTrailingZeros(checkers);
+            allowed &= BETWEEN[king][checker] | checkers;
+        } else if (kingMoves) {
+            n = castles(position, us, king, occ, to, moves, n);
+        }
+        long pinned = pinned(position, us, king, occ);
+        for (int type = Position.KNIGHT; type <= Position.QUEEN; type++) {
+            for (long pieces = position.pieces(us, type) & from; pieces != 0;
+                 pieces &= pieces - 1) {
+                int sq = Long.numberOfTrailingZeros(pieces);
+                long targets = Attacks.of(type, sq, occ) & allowed;
+                if ((pinned & (1L << sq)) != 0) {
+                    targets &= LINE[king][sq];
+                }
+                n = add(sq, targets, moves, n);
+            }
+        }
+        return pawns(position, us, king, from, to, allowed, pinned, moves,
+                     n);
+    }
+
+    /**
+     *@param position a position
+     *@param move a move, packed by Move.pack
+     *@return true if move is legal in position
+     */
+    public static boolean isLegal(Position position, int move) {
+        int[] moves = new int[MAX_MOVES];
+        int n = generate(position, moves);
+        for (int i = 0; i < n; i++) {
+            if (moves[i] == move) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     *Find the one legal move to target by a piece on one of origins.
+     *This is what resolving a SAN move comes down to once its piece
+     *letter, disambiguation and promotion have been read.
+     *@param position the position the move is played in
+     *@param origins the squares the moving piece may start on
+     *@param target the square the piece moves to
+     *@param promotion the type promoted to, or PAWN if there is none
+     *@param moves scratch space, at least MAX_MOVES long
+     *@return the packed move, or -1 if no legal move matches or more
+     *than one does
+     */
+    public static int resolve(Position position, long origins, int target,
+                              int promotion, int[] moves) {
+        int n = generate(position, origins, 1L << target, moves);
+        int found = -1;
+        for (int i = 0; i < n; i++) {
+            int move = moves[i];
+            if (Move.to(move) == target && Move.promotion(move) == promotion
+                && (origins & (1L << Move.from(move))) != 0) {
+                if (found >= 0) {
+                    return -1;
+                }
+                found = move;
+            }
+        }
+        return found;
+    }
+
+    /**
+     *Add the castling moves of the side to move, which is not in check
+     */
+    private static int castles(Position position, int us, int king,
+                               long occ, long to, int[] moves, int n) {
+        int rights = position.castlingRights()
+            >> ((us == Position.WHITE) ? 0 : 2);
+        int base = (us == Position.WHITE) ? 0 : 56;
+        long rooks = position.pieces(us, Position.ROOK);
+        if (king != base + 4 || (rights & 3) == 0) {
+            return n;
+        }
+        int them = us ^ 1;
+        if ((rights & 1) != 0 && (to & (1L << (base + 6))) != 0
+            && (occ & (0x60L << base)) == 0
+            && (rooks & (1L << (base + 7))) != 0
+            && !attacked(position, base + 5, them, occ)
+            && !attacked(position, base + 6, them, occ)) {
+            moves[n++] = Move.pack(king, base + 6, Position.PAWN);
+        }
+        if ((rights & 2) != 0 && (to & (1L << (base + 2))) != 0
+            && (occ & (0x0EL << base)) == 0
+            && (rooks & (1L << base)) != 0
+            && !attacked(position, base + 3, them, occ)
+            && !attacked(position, base + 2, them, occ)) {
+            moves[n++] = Move.pack(king, base + 2, Position.PAWN);
+        }
+        return n;
+    }
+
+    /**
+     *Add the pawn moves of the side to move, promotions to every piece
+     *and en passant captures that do not expose the king included
+     */
+    private static int pawns(Position position, int us, int king,
+                             long from, long to, long allowed,
+                             long pinned, int[] moves, int n) {
+        int them = us ^ 1;
+        int up = (us == Position.WHITE) ? 8 : -8;
+        int startRank = (us == Position.WHITE) ? 1 : 6;
+        int lastRank = (us == Position.WHITE) ? 7 : 0;
+        long occ = position.occupied();
+        long enemy = position.occupancy(them);
+        int ep = position.epSquare();
+        for (long pawns = position.pieces(us, Position.PAWN) & from;
+             pawns != 0; pawns &= pawns - 1) {
+            int sq = Long.numberOfTrailingZeros(pawns);
+            long targets = Attacks.pawn(us, sq) & enemy;
+            int one = sq + up;
+            if ((occ & (1L << one)) == 0) {
+                targets |= 1L << one;
+                if ((sq >> 3) == startRank && (occ & (1L << (one + up))) == 0) {
+                    targets |= 1L << (one + up);
+                }
+            }
+            targets &= allowed;
+            if ((pinned & (1L << sq)) != 0) {
+                targets &= LINE[king][sq];
+            }
+            for (; targets != 0; targets &= targets - 1) {
+                int target = Long.numberOfTrailingZeros(targets);
+                if ((target >> 3) == lastRank) {
+                    for (int type = Position.QUEEN; type >= Position.KNIGHT;
+                         type--) {
+                        moves[n++] = Move.pack(sq, target, type);
+                    }
+                } else {
+                    moves[n++] = Move.pack(sq, target, Position.PAWN);
+                }
+            }
+            if (ep != Position.NO_SQUARE && (to & (1L << ep)) != 0
+                && (Attacks.pawn(us, sq) & (1L << ep)) != 0) {
+                //both pawns leave their squares at once, which can
+                //uncover a check no pin test would see
+                long after = (occ & ~(1L << sq) & ~(1L << (ep - up)))
+                    | (1L << ep);
+                if (!attacked(position, king, them, after)) {
+                    moves[n++] = Move.pack(sq, ep, Position.PAWN);
+                }
+            }
+        }
+        return n;
+    }
+
+    /**
+     *Return the pieces of the side to move pinned against its king
+     */
+    private static long pinned(Position position, int us, int king,
+                               long occ) {
+        int them = us ^ 1;
+        long queens = position.pieces(them, Position.QUEEN);
+        long snipers = (Attacks.rook(king, 0L)
+                        & (position.pieces(them, Position.ROOK) | queens))
+            | (Attacks.bishop(king, 0L)
+               & (position.pieces(them, Position.BISHOP) | queens));
+        long own = position.occupancy(us);
+        long pinned = 0L;
+        for (; snipers != 0; snipers &= snipers - 1) {
+            long between = BETWEEN[king][Long.numberOfTrailingZeros(snipers)]
+                & occ;
+            if (between != 0 && (between & (between - 1)) == 0
+                && (between & own) != 0) {
+                pinned |= between;
+            }
+        }
+        return pinned;
+    }
+
+    /**
+     *Return the pieces of colour by attacking sq, as if only the
+     *squares in occ were occupied
+     */
+    private static long attackers(Position position, int sq, int by,
+                                  long occ) {
+        long queens = position.pieces(by, Position.QUEEN);
+        return ((Attacks.knight(sq) & position.pieces(by, Position.KNIGHT))
+                | (Attacks.king(sq) & position.pieces(by, Position.KING))
+                | (Attacks.pawn(by ^ 1, sq)
+                   & position.pieces(by, Position.PAWN))
+                | (Attacks.rook(sq, occ)
+                   & (position.pieces(by, Position.ROOK) | queens))
+                | (Attacks.bishop(sq, occ)
+                   & (position.pieces(by, Position.BISHOP) | queens)))
+            & occ;
+    }
+
+    private static boolean attacked(Position position, int sq, int by,
+                                    long occ) {
+        return attackers(position, sq, by, occ) != 0;
+    }
+
+    /**
+     *Add a move from from to each square in to
+     */
+    private static int add(int from, long to, int[] moves, int n) {
+        for (; to != 0; to &= to - 1) {
+            moves[n++] = Move.pack(from, Long.numberOfTrailingZeros(to),
+                                   Position.PAWN);
+        }
+        return n;
+    }
+}
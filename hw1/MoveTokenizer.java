@@ -0,0 +1,109 @@
+/**
+ *Splits PGN movetext into the SAN moves of its main line without
+ *allocating. Tokens are reported as [start, end) offsets into the
+ *caller's char array, either one at a time through next() or all at
+ *once into a reusable offset buffer through tokenize().
+ *The lexing is done by a skipping MovetextLexer, so move numbers,
+ *comments, glyphs and variations are passed over and a game
+ *termination marker ends the movetext.
+ *@author Jordan Goldstein
+ *@version 1.0.0
+ */
+public class MoveTokenizer {
+    private final MovetextLexer lexer = new MovetextLexer();
+    private int tokenStart;
+    private int tokenEnd;
+    private int[] starts = new int[256];
+    private int[] ends = new int[256];
+    private int count;
+
+    /**
+     *Point the tokenizer at the movetext in text[from, to)
+     *@param text the characters holding the movetext
+     *@param from the index the movetext starts at
+     *@param to the index the movetext ends at
+     *@return this
+     */
+    public MoveTokenizer reset(char[] text, int from, int to) {
+        lexer.reset(text, from, to);
+        tokenStart = from;
+        tokenEnd = from;
+        return this;
+    }
+
+    /**
+     *Advance to the next move
+     *@return false once the movetext or the game has ended
+     */
+    public boolean next() {
+        if (lexer.next() != MovetextLexer.MOVE) {
+            return false;
+        }
+        tokenStart = lexer.start();
+        tokenEnd = lexer.end();
+        return true;
+    }
+
+    /**
+     *@return the index of the first character of the current move
+     */
+    public int start() {
+        return tokenStart;
+    }
+
+    /**
+     *@return the index just past the last character of the current move
+     */
+    public int end() {
+        return tokenEnd;
+    }
+
+    /**
+     *Tokenize all of the movetext in text[from, to) into the offset buffer
+     *@param text the characters holding the movetext
+     *@param from the index the movetext starts at
+     *@param to the index the movetext ends at
+     *@return the number of moves found
+     */
+    public int tokenize(char[] text, int from, int to) {
+        reset(text, from, to);
+        count = 0;
+        while (next()) {
+            if (count == starts.length) {
+                int[] grownStarts = new int[count * 2];
+                int[] grownEnds = new int[count * 2];
+                System.arraycopy(starts, 0, grownStarts, 0, count);
+                System.arraycopy(ends, 0, grownEnds, 0, count);
+                starts = grownStarts;
+                ends = grownEnds;
+            }
+            starts[count] = tokenStart;
+            ends[count] = tokenEnd;
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     *@return the number of moves found by the last tokenize()
+     */
+    public int count() {
+        return count;
+    }
+
+    /**
+     *@param i the index of a move found by the last tokenize()
+     *@return the index of the first character of that move
+     */
+    public int start(int i) {
+        return starts[i];
+    }
+
+    /**
+     *@param i the index of a move found by the last tokenize()
+     *@return the index just past the last character of that move
+     */
+    public int end(int i) {
+        return ends[i];
+    }
+}
@@ -0,0 +1,347 @@
+/**
+ *Splits PGN movetext into classified tokens in a single pass, without
+ *allocating. Besides moves, move numbers and the game termination
+ *marker, movetext may hold brace and rest-of-line comments, % escape
+ *lines, $n numeric annotation glyphs and parenthesized variations,
+ *which may nest and hold comments of their own.
+ *Tokens are reported as [start, end) offsets into the caller's char
+ *array. By default the lexer is skipping: comments, glyphs, move
+ *numbers and whole variations are passed over without being reported,
+ *so only the moves of the main line and the termination marker come
+ *out. With skipping off every token is reported, and the commands
+ *embedded in a comment, such as [%clk 1:59:58] or [%eval 0.25], can be
+ *read with command().
+ *@see http://www.saremba.de/chessgml/standards/pgn/pgn-complete.htm#c8.2
+ *@author Jordan Goldstein
+ *@version 1.0.0
+ */
+public class MovetextLexer {
+    /**No tokens are left*/
+    public static final int END = 0;
+    /**A move in SAN, with any check and !? suffixes*/
+    public static final int MOVE = 1;
+    /**A move number such as "12." or "12..."*/
+    public static final int MOVE_NUMBER = 2;
+    /**A game termination marker; the movetext ends after it*/
+    public static final int RESULT = 3;
+    /**A {brace} or ; rest-of-line comment, or a % escape line*/
+    public static final int COMMENT = 4;
+    /**A numeric annotation glyph such as "$14"*/
+    public static final int NAG = 5;
+    /**The "(" opening a variation*/
+    public static final int VARIATION_START = 6;
+    /**The ")" closing a variation*/
+    public static final int VARIATION_END = 7;
+
+    //the characters that end a move, move number or termination marker
+    private static final boolean[] DELIMITERS = new boolean[128];
+
+    static {
+        for (char c = 0; c <= ' '; c++) {
+            DELIMITERS[c] = true;
+        }
+        for (char c : ".{}();$".toCharArray()) {
+            DELIMITERS[c] = true;
+        }
+    }
+
+    private char[] text;
+    private int from;
+    private int pos;
+    private int limit;
+    private boolean skipping = true;
+    private int kind;
+    private int tokenStart;
+    private int tokenEnd;
+    private int depth;
+
+    /**
+     *Point the lexer at the movetext in text[from, to)
+     *@param text the characters holding the movetext
+     *@param from the index the movetext starts at
+     *@param to the index the movetext ends at
+     *@return this
+     */
+    public MovetextLexer reset(char[] text, int from, int to) {
+        this.text = text;
+        this.from = from;
+        pos = from;
+        limit = to;
+        kind = END;
+        tokenStart = from;
+        tokenEnd = from;
+        depth = 0;
+        return this;
+    }
+
+    /**
+     *Choose whether comments, glyphs, move numbers and variations are
+     *passed over or reported
+     *@param skipping true to report only main line moves and the
+     *termination marker
+     *@return this
+     */
+    public MovetextLexer skipping(boolean skipping) {
+        this.skipping = skipping;
+        return this;
+    }
+
+    /**
+     *Advance to the next token
+     *@return the kind of the token, END once the movetext or the game
+     *has ended
+     */
+    public int next() {
+        if (kind == VARIATION_END && depth > 0) {
+            //the ) was still inside the variation it closed
+            depth--;
+        }
+        while (pos < limit) {
+            char c = text[pos];
+            int start = pos;
+            if (c <= ' ') {
+                pos++;
+                continue;
+            }
+            if (c >= '0' && c <= 'z' && c != ';') {
+                //moves, move numbers and results, by far the most common
+                if (symbol(start) != END) {
+                    return kind;
+                }
+                continue;
+            }
+            switch (c) {
+            case '{':
+                pos = closeBrace(pos + 1);
+                if (!skipping) {
+                    return token(COMMENT, start, pos);
+                }
+                break;
+            case ';':
+                pos = endOfLine(pos + 1);
+                if (!skipping) {
+                    return token(COMMENT, start, pos);
+                }
+                break;
+            case '(':
+                if (skipping) {
+                    pos = closeVariation(pos + 1);
+                    break;
+                }
+                pos++;
+                depth++;
+                return token(VARIATION_START, start, pos);
+            case ')':
+                pos++;
+                if (!skipping) {
+                    return token(VARIATION_END, start, pos);
+                }
+                break;
+            case '}':
+                //a stray brace, as left by a badly edited comment
+                pos++;
+                break;
+            case '$':
+                pos++;
+                while (pos < limit && text[pos] >= '0' && text[pos] <= '9') {
+                    pos++;
+                }
+                if (!skipping) {
+                    return token(NAG, start, pos);
+                }
+                break;
+            case '%':
+                if (pos == from || text[pos - 1] == '\n') {
+                    pos = endOfLine(pos + 1);
+                    if (!skipping) {
+                        return token(COMMENT, start, pos);
+                    }
+                    break;
+                }
+                if (symbol(start) != END) {
+                    return kind;
+                }
+                break;
+            default:
+                if (symbol(start) != END) {
+                    return kind;
+                }
+                break;
+            }
+        }
+        kind = END;
+        return END;
+    }
+
+    /**
+     *@return the kind of the current token
+     */
+    public int kind() {
+        return kind;
+    }
+
+    /**
+     *@return the index of the first character of the current token
+     */
+    public int start() {
+        return tokenStart;
+    }
+
+    /**
+     *@return the index just past the last character of the current token
+     */
+    public int end() {
+        return tokenEnd;
+    }
+
+    /**
+     *@return how many variations the current token is nested in; always
+     *0 when skipping
+     */
+    public int depth() {
+        return depth;
+    }
+
+    /**
+     *Read a command embedded in the current comment, such as the clock
+     *time in "{[%clk 1:59:58]}"
+     *@param name the name of the command, such as "clk" or "eval"
+     *@return the text of the command's value, or null if the current
+     *token is not a comment holding that command
+     */
+    public String command(String name) {
+        if (kind != COMMENT) {
+            return null;
+        }
+        int last = tokenEnd - name.length() - 2;
+        for (int i = tokenStart; i < last; i++) {
+            if (text[i] == '[' && text[i + 1] == '%' && matches(name, i + 2)
+                && text[i + 2 + name.length()] <= ' ') {
+                int start = i + 2 + name.length();
+                while (start < tokenEnd && text[start] <= ' ') {
+                    start++;
+                }
+                int end = start;
+                while (end < tokenEnd && text[end] != ']') {
+                    end++;
+                }
+                while (end > start && text[end - 1] <= ' ') {
+                    end--;
+                }
+                return new String(text, start, end - start);
+            }
+        }
+        return null;
+    }
+
+    /**
+     *Lex a move, move number or termination marker starting at start
+     *return its kind, or END if it is a move number being skipped
+     */
+    private int symbol(int start) {
+        while (pos < limit && !isDelimiter(text[pos])) {
+            pos++;
+        }
+        if (pos < limit && text[pos] == '.') {
+            //a move number such as "12." or "12..." directly followed
+            //by the move it numbers
+            while (pos < limit && text[pos] == '.') {
+                pos++;
+            }
+            return skipping ? END : token(MOVE_NUMBER, start, pos);
+        }
+        if (isResult(start, pos)) {
+            int end = pos;
+            if (depth == 0) {
+                pos = limit;
+            }
+            return token(RESULT, start, end);
+        }
+        return token(MOVE, start, pos);
+    }
+
+    private int token(int kind, int start, int end) {
+        this.kind = kind;
+        tokenStart = start;
+        tokenEnd = end;
+        return kind;
+    }
+
+    /**
+     *Return the index just past the } closing a comment whose text
+     *starts at i, or limit if it is never closed
+     */
+    private int closeBrace(int i) {
+        while (i < limit && text[i] != '}') {
+            i++;
+        }
+        return (i < limit) ? i + 1 : limit;
+    }
+
+    /**
+     *Return the index of the line break ending the line that i is on
+     */
+    private int endOfLine(int i) {
+        while (i < limit && text[i] != '\n') {
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     *Return the index just past the ) closing a variation whose text
+     *starts at i, passing over nested variations and comments
+     */
+    private int closeVariation(int i) {
+        int open = 1;
+        while (i < limit) {
+            char c = text[i++];
+            if (c == '(') {
+                open++;
+            } else if (c == ')') {
+                if (--open == 0) {
+                    return i;
+                }
+            } else if (c == '{') {
+                i = closeBrace(i);
+            } else if (c == ';') {
+                i = endOfLine(i);
+            }
+        }
+        return limit;
+    }
+
+    private boolean matches(String name, int i) {
+        for (int j = 0; j < name.length(); j++) {
+            if (text[i + j] != name.charAt(j)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     *Check whether c ends a move, move number or termination marker
+     */
+    private static boolean isDelimiter(char c) {
+        return c < DELIMITERS.length && DELIMITERS[c];
+    }
+
+    /**
+     *Check whether text[start, end) is a game termination marker
+     */
+    private boolean isResult(int start, int end) {
+        int length = end - start;
+        if (length == 1) {
+            return text[start] == '*';
+        }
+        if (length == 3) {
+            return (text[start] == '1' && text[start + 1] == '-'
+                    && text[start + 2] == '0')
+                || (text[start] == '0' && text[start + 1] == '-'
+                    && text[start + 2] == '1');
+        }
+        return length == 7 && text[start] == '1' && text[start + 1] == '/'
+            && text[start + 2] == '2' && text[start + 3] == '-';
+    }
+}
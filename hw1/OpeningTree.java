@@ -0,0 +1,232 @@
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ *An opening tree: for every position reached within the first plies
+ *of a set of games, each move played from it and how the games that
+ *played it ended. Positions are keyed by Zobrist hash, so move order
+ *transpositions share a node. Games are added from many threads at
+ *once; the maps are concurrent and the counters are LongAdders, so
+ *workers never block each other on a hot opening line.
+ *Usage: java OpeningTree games.pgn depth [threads] [moves...]
+ *@author Jordan Goldstein
+ *@version 1.0.0
+ */
+public class OpeningTree {
+    private static final int BATCH = 1024;
+
+    /**
+     *How the games that played a move ended
+     */
+    public static class MoveStats {
+        private final LongAdder whiteWins = new LongAdder();
+        private final LongAdder draws = new LongAdder();
+        private final LongAdder blackWins = new LongAdder();
+
+        /**
+         *@return the number of games that played the move
+         */
+        public long games() {
+            return whiteWins.sum() + draws.sum() + blackWins.sum();
+        }
+
+        /**
+         *@return the number of those games white won
+         */
+        public long whiteWins() {
+            return whiteWins.sum();
+        }
+
+        /**
+         *@return the number of those games that were drawn
+         */
+        public long draws() {
+            return draws.sum();
+        }
+
+        /**
+         *@return the number of those games black won
+         */
+        public long blackWins() {
+            return blackWins.sum();
+        }
+    }
+
+    private final int depth;
+    private final Map<Long, Map<Integer, MoveStats>> nodes =
+        new ConcurrentHashMap<>();
+    private final ThreadLocal<GameReplayer> replayers =
+        ThreadLocal.withInitial(GameReplayer::new);
+    private final LongAdder games = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+
+    /**
+     *Creates an empty tree
+     *@param depth how many plies of each game to count
+     */
+    public OpeningTree(int depth) {
+        this.depth = depth;
+    }
+
+    /**
+     *Count the opening moves of one game. Safe to call from any number
+     *of threads at once. Games without a decisive or drawn result are
+     *ignored.
+     *@param game a `String` containing a PGN-formatted chess game
+     *@throws PgnFormatException if a move in the opening cannot be played
+     */
+    public void add(String game) {
+        GameReplayer replayer = replayers.get();
+        Iterator<Position> plies = replayer.plies(game);
+        String result = replayer.headers().get("Result", "*");
+        int outcome = result.equals("1-0") ? 0 : result.equals("1/2-1/2") ? 1
+            : result.equals("0-1") ? 2 : -1;
+        if (outcome < 0) {
+            return;
+        }
+        for (int ply = 0; ply < depth && plies.hasNext(); ply++) {
+            long hash = replayer.position().hash();
+            plies.next();
+            MoveStats stats = nodes.computeIfAbsent(hash,
+                h -> new ConcurrentHashMap<>())
+                .computeIfAbsent(replayer.lastMove(), m -> new MoveStats());
+            LongAdder counter = (outcome == 0) ? stats.whiteWins
+                : (outcome == 1) ? stats.draws : stats.blackWins;
+            counter.increment();
+        }
+        games.increment();
+    }
+
+    /**
+     *@param hash the Zobrist hash of a position
+     *@return the moves played from that position, packed by Move.pack,
+     *and their results; empty if the position is not in the tree
+     */
+    public Map<Integer, MoveStats> moves(long hash) {
+        Map<Integer, MoveStats> moves = nodes.get(hash);
+        return (moves == null) ? Collections.emptyMap()
+            : Collections.unmodifiableMap(moves);
+    }
+
+    /**
+     *@return the number of positions in the tree
+     */
+    public int size() {
+        return nodes.size();
+    }
+
+    /**
+     *@return the number of games counted
+     */
+    public long games() {
+        return games.sum();
+    }
+
+    /**
+     *@return the number of games addAll() gave up on part way through
+     */
+    public long errors() {
+        return errors.sum();
+    }
+
+    /**
+     *Add every game of a PGN file using a pool of worker threads.
+     *Games are read on the calling thread and handed out in batches,
+     *with at most two batches per worker waiting at a time. Games that
+     *cannot be replayed are reported to System.err.
+     *@param path the PGN file to read
+     *@param threads the number of worker threads
+     *@throws IOException if the file cannot be read
+     *@throws InterruptedException if interrupted while waiting
+     */
+    public void addAll(String path, int threads)
+        throws IOException, InterruptedException {
+        addAll(path, threads, ErrorSink.printingTo(System.err));
+    }
+
+    /**
+     *Add every game of a PGN file using a pool of worker threads, as
+     *addAll(path, threads) does
+     *@param path the PGN file to read
+     *@param threads the number of worker threads
+     *@param sink where to report the games that cannot be replayed,
+     *whose plies before the bad move stay counted
+     *@throws IOException if the file cannot be read
+     *@throws InterruptedException if interrupted while waiting
+     */
+    public void addAll(String path, int threads, ErrorSink sink)
+        throws IOException, InterruptedException {
+        Path file = Paths.get(path);
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        Semaphore inFlight = new Semaphore(threads * 2);
+        try (PgnFileReader reader = new PgnFileReader(path)) {
+            while (reader.hasNext()) {
+                List<String> batch = new ArrayList<>(BATCH);
+                long[] offsets = new long[BATCH];
+                while (batch.size() < BATCH && reader.hasNext()) {
+                    batch.add(reader.next());
+                    offsets[batch.size() - 1] = reader.offset();
+                }
+                inFlight.acquire();
+                pool.execute(() -> {
+                        try {
+                            for (int i = 0; i < batch.size(); i++) {
+                                try {
+                                    add(batch.get(i));
+                                } catch (RuntimeException e) {
+                                    sink.error(file, offsets[i],
+                                               e.toString());
+                                    errors.increment();
+                                }
+                            }
+                        } finally {
+                            inFlight.release();
+                        }
+                    });
+            }
+        } finally {
+            pool.shutdown();
+            pool.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    public static void main(String[] args)
+        throws IOException, InterruptedException {
+        int threads = (args.length > 2) ? Integer.parseInt(args[2])
+            : Runtime.getRuntime().availableProcessors();
+        OpeningTree tree = new OpeningTree(Integer.parseInt(args[1]));
+        long start = System.nanoTime();
+        tree.addAll(args[0], threads);
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.err.format("%d games, %d positions in %.2f s on %d threads%n",
+                          tree.games(), tree.size(), seconds, threads);
+        GameReplayer replayer = new GameReplayer();
+        for (int i = 3; i < args.length; i++) {
+            replayer.play(args[i]);
+        }
+        Position position = replayer.position();
+        SanWriter san = new SanWriter();
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<Integer, MoveStats> e
+                 : tree.moves(position.hash()).entrySet()) {
+            MoveStats stats = e.getValue();
+            sb.setLength(0);
+            san.append(position, e.getKey(), sb);
+            System.out.format("%-8s %8d  +%d =%d -%d%n", sb, stats.games(),
+                              stats.whiteWins(), stats.draws(),
+                              stats.blackWins());
+        }
+    }
+}
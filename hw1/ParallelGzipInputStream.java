@@ -0,0 +1,269 @@
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+
+/**
+ *Reads a BGZF file, as written by bgzip, inflating its blocks in
+ *parallel and handing out their bytes in order. A BGZF file is a run
+ *of small gzip members, each of which records its own compressed
+ *size in a BC field of its header and its inflated size in its
+ *trailer, so the blocks are found by following those sizes from the
+ *start of the file; nothing is scanned for or inflated on a guess.
+ *Runs of blocks are inflated on workers, and only as many runs are
+ *scheduled ahead of the reader as fit in a fixed budget of inflated
+ *bytes. If the chain of blocks breaks, say because a plain gzip
+ *member was appended to the file, the rest of the file is inflated as
+ *it is read.
+ *Use isBlocked() to check a file first; other gzip files are best
+ *read with GZIPInputStream.
+ *@see https://samtools.github.io/hts-specs/SAMv1.pdf#section.4.1
+ *@author Jordan Goldstein
+ *@version 1.0.0
+ */
+public class ParallelGzipInputStream extends InputStream {
+    private static final int CHUNK = 1 << 16;
+    private static final int FEXTRA = 4;
+    private static final int HEADER = 18;
+    private static final int TRAILER = 8;
+    private static final int MAX_BLOCK = 1 << 16;
+    //inflated bytes given to one worker at a time
+    private static final int RUN = 1 << 20;
+    //inflated bytes scheduled ahead of the reader
+    private static final int BUDGET = 1 << 25;
+
+    private final FileChannel channel;
+    private final long size;
+    private final ExecutorService pool;
+    private final ArrayDeque<Future<byte[]>> pending = new ArrayDeque<>();
+    private final ArrayDeque<Integer> lengths = new ArrayDeque<>();
+    private final ByteBuffer header = ByteBuffer.allocate(HEADER)
+        .order(ByteOrder.LITTLE_ENDIAN);
+    private long inFlight;
+    private long next;
+    private boolean broken;
+    private InputStream streaming;
+    private byte[] current = new byte[0];
+    private int read;
+
+    /**
+     *Opens a BGZF file
+     *@param file the BGZF file
+     *@param threads the number of runs of blocks to inflate at once
+     *@throws IOException if the file cannot be read
+     */
+    public ParallelGzipInputStream(Path file, int threads)
+        throws IOException {
+        channel = FileChannel.open(file, StandardOpenOption.READ);
+        size = channel.size();
+        pool = Executors.newFixedThreadPool(threads, r -> {
+                Thread thread = new Thread(r, "gzip-inflater");
+                thread.setDaemon(true);
+                return thread;
+            });
+    }
+
+    /**
+     *Check whether a file is BGZF of more than one block, which is
+     *when reading it in parallel pays: its first member records its
+     *size, and another member starts where the first one ends
+     *@param file a gzip file
+     *@return true if the file can be read with this class
+     *@throws IOException if the file cannot be read
+     */
+    public static boolean isBlocked(Path file) throws IOException {
+        try (FileChannel channel =
+                 FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer buf = ByteBuffer.allocate(HEADER)
+                .order(ByteOrder.LITTLE_ENDIAN);
+            int first = blockSize(channel, 0, buf);
+            return first > 0 && blockSize(channel, first, buf) > 0;
+        }
+    }
+
+    @Override
+    public int read() throws IOException {
+        byte[] one = new byte[1];
+        return (read(one, 0, 1) < 0) ? -1 : one[0] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        while (streaming == null && read == current.length) {
+            if (!advance()) {
+                return -1;
+            }
+        }
+        if (streaming != null) {
+            return streaming.read(b, off, len);
+        }
+        int n = Math.min(len, current.length - read);
+        System.arraycopy(current, read, b, off, n);
+        read += n;
+        return n;
+    }
+
+    @Override
+    public void close() throws IOException {
+        pool.shutdownNow();
+        if (streaming != null) {
+            streaming.close();
+        }
+        channel.close();
+    }
+
+    /**
+     *Move on to the next run of inflated blocks
+     *return false at the end of the file
+     */
+    private boolean advance() throws IOException {
+        schedule();
+        if (pending.isEmpty()) {
+            if (next >= size) {
+                return false;
+            }
+            //the chain of blocks broke off; inflate the rest as it is
+            //read, as GZIPInputStream would have from the start
+            pool.shutdown();
+            streaming = new GZIPInputStream(Channels.newInputStream(
+                channel.position(next)), CHUNK);
+            return true;
+        }
+        try {
+            current = pending.removeFirst().get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while inflating", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException(e.getCause());
+        }
+        inFlight -= lengths.removeFirst();
+        read = 0;
+        return true;
+    }
+
+    /**
+     *Follow the chain of blocks from next, handing runs of them to the
+     *workers until the budget of inflated bytes is spent; the first
+     *run is always scheduled, however big it is
+     */
+    private void schedule() throws IOException {
+        while (!broken && next < size
+               && (pending.isEmpty() || inFlight + RUN <= BUDGET)) {
+            long start = next;
+            int length = 0;
+            while (length < RUN && next < size) {
+                int block = blockSize(channel, next, header);
+                if (block < 0) {
+                    broken = true;
+                    break;
+                }
+                header.clear().limit(4);
+                if (channel.read(header, next + block - 4) != 4
+                    || header.getInt(0) < 0 || header.getInt(0) > MAX_BLOCK) {
+                    broken = true;
+                    break;
+                }
+                length += header.getInt(0);
+                next += block;
+            }
+            if (next == start) {
+                return;
+            }
+            long end = next;
+            int total = length;
+            pending.addLast(pool.submit(() -> inflate(start, end, total)));
+            lengths.addLast(total);
+            inFlight += total;
+        }
+    }
+
+    /**
+     *Inflate the blocks in file[start, end), which hold length bytes
+     *once inflated, checking each against its trailer
+     */
+    private byte[] inflate(long start, long end, int length)
+        throws IOException {
+        ByteBuffer in = ByteBuffer.allocate((int) (end - start))
+            .order(ByteOrder.LITTLE_ENDIAN);
+        while (in.hasRemaining()) {
+            if (channel.read(in, start + in.position()) < 0) {
+                throw new IOException("Truncated gzip block at " + start);
+            }
+        }
+        byte[] out = new byte[length];
+        int done = 0;
+        int pos = 0;
+        Inflater inflater = new Inflater(true);
+        CRC32 crc = new CRC32();
+        try {
+            while (pos < in.limit()) {
+                int block = (in.getShort(pos + 16) & 0xFFFF) + 1;
+                int trailer = pos + block - TRAILER;
+                int isize = in.getInt(trailer + 4);
+                inflater.reset();
+                inflater.setInput(in.array(), pos + HEADER,
+                                  trailer - pos - HEADER);
+                int n = inflater.inflate(out, done, isize);
+                crc.reset();
+                crc.update(out, done, n);
+                if (n != isize || !inflater.finished()
+                    || in.getInt(trailer) != (int) crc.getValue()) {
+                    throw new IOException("Corrupt gzip block at "
+                                          + (start + pos));
+                }
+                done += n;
+                pos += block;
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("Corrupt gzip block at " + start, e);
+        } finally {
+            inflater.end();
+        }
+        return out;
+    }
+
+    /**
+     *Return the size of the BGZF block at offset pos of the file, or
+     *-1 if no BGZF block starts there
+     */
+    private static int blockSize(FileChannel channel, long pos,
+                                 ByteBuffer buf) throws IOException {
+        buf.clear();
+        if (pos + HEADER > channel.size()) {
+            return -1;
+        }
+        while (buf.hasRemaining()) {
+            channel.read(buf, pos + buf.position());
+        }
+        if ((buf.get(0) & 0xFF) != 0x1F
+            || (buf.get(1) & 0xFF) != 0x8B || buf.get(2) != 8
+            || buf.get(3) != FEXTRA || buf.getShort(10) != 6
+            || buf.get(12) != 'B' || buf.get(13) != 'C'
+            || buf.getShort(14) != 2) {
+            return -1;
+        }
+        int block = (buf.getShort(16) & 0xFFFF) + 1;
+        return (block >= HEADER + TRAILER + 2 && pos + block <= channel.size())
+            ? block : -1;
+    }
+}
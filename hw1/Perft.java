@@ -0,0 +1,139 @@
+/**
+ *Counts the leaf nodes of the legal move tree of a position to a
+ *fixed depth. The counts of the standard reference positions are
+ *known exactly, so any bug in move generation or in making moves
+ *shows up as a wrong number, and the time taken gives the throughput
+ *of the move generator in nodes per second.
+ *Usage: java Perft [max nodes]      run the reference suite
+ *       java Perft "fen" depth      count each root move of a position
+ *@see https://www.chessprogramming.org/Perft_Results
+ *@author Jordan Goldstein
+ *@version 1.0.0
+ */
+public class Perft {
+    private static final String[] SUITE = {
+        "rnbqkbnr/pppppppp/8/8/8/8/PPPPPPPP/RNBQKBNR w KQkq - 0 1",
+        "r3k2r/p1ppqpb1/bn2pnp1/3PN3/1p2P3/2N2Q1p/PPPBBPPP/R3K2R w KQkq -"
+        + " 0 1",
+        "8/2p5/3p4/KP5r/1R3p1k/8/4P1P1/8 w - - 0 1",
+        "r3k2r/Pppp1ppp/1b3nbN/nP6/BBP1P3/q4N2/Pp1P2PP/R2Q1RK1 w kq - 0 1",
+        "rnbq1k1r/pp1Pbppp/2p5/8/2B5/8/PPP1NnPP/RNBQK2R w KQ - 1 8",
+        "r4rk1/1pp1qppp/p1np1n2/2b1p1B1/2B1P1b1/P1NP1N2/1PP1QPPP/R4RK1 w - -"
+        + " 0 10"
+    };
+
+    //EXPECTED[i][d - 1] is the node count of SUITE[i] at depth d
+    private static final long[][] EXPECTED = {
+        {20, 400, 8902, 197281, 4865609},
+        {48, 2039, 97862, 4085603},
+        {14, 191, 2812, 43238, 674624, 11030083},
+        {6, 264, 9467, 422333},
+        {44, 1486, 62379, 2103487},
+        {46, 2079, 89890, 3894594}
+    };
+
+    private final Position board = new Position();
+    private final int[][] moves;
+
+    /**
+     *Creates a counter for trees up to depth plies deep
+     *@param depth the deepest tree to count
+     */
+    public Perft(int depth) {
+        moves = new int[depth + 1][MoveGenerator.MAX_MOVES];
+    }
+
+    /**
+     *@param position the root of the tree
+     *@param depth the number of plies to look ahead
+     *@return the number of leaf nodes of the tree
+     */
+    public long count(Position position, int depth) {
+        board.copyFrom(position);
+        return (depth == 0) ? 1 : count(0, depth);
+    }
+
+    /**
+     *Count the tree of every legal move of position separately
+     *@param position the root of the tree
+     *@param depth the number of plies to look ahead, at least 1
+     *@param out where to write one line per root move
+     *@return the number of leaf nodes of the whole tree
+     */
+    public long divide(Position position, int depth, StringBuilder out) {
+        board.copyFrom(position);
+        SanWriter san = new SanWriter();
+        int n = MoveGenerator.generate(board, moves[0]);
+        long total = 0;
+        for (int i = 0; i < n; i++) {
+            int move = moves[0][i];
+            san.append(board, move, out);
+            board.make(move);
+            long nodes = (depth == 1) ? 1 : count(1, depth - 1);
+            board.unmake();
+            out.append(": ").append(nodes).append('\n');
+            total += nodes;
+        }
+        return total;
+    }
+
+    /**
+     *Count the tree below the board, making and unmaking each move on
+     *it in place
+     */
+    private long count(int ply, int depth) {
+        int n = MoveGenerator.generate(board, moves[ply]);
+        if (depth == 1) {
+            return n;
+        }
+        long nodes = 0;
+        for (int i = 0; i < n; i++) {
+            board.make(moves[ply][i]);
+            nodes += count(ply + 1, depth - 1);
+            board.unmake();
+        }
+        return nodes;
+    }
+
+    public static void main(String[] args) {
+        if (args.length == 2) {
+            int depth = Integer.parseInt(args[1]);
+            StringBuilder out = new StringBuilder();
+            long start = System.nanoTime();
+            long nodes = new Perft(depth).divide(FenReader.read(args[0]),
+                                                 depth, out);
+            double seconds = (System.nanoTime() - start) / 1e9;
+            System.out.print(out);
+            System.out.format("%d nodes in %.2f s (%.0f nodes/sec)%n",
+                              nodes, seconds, nodes / seconds);
+            return;
+        }
+        long limit = (args.length > 0) ? Long.parseLong(args[0])
+            : 5_000_000L;
+        Perft perft = new Perft(8);
+        long nodes = 0;
+        long nanos = 0;
+        boolean passed = true;
+        for (int i = 0; i < SUITE.length; i++) {
+            Position position = FenReader.read(SUITE[i]);
+            for (int depth = 1; depth <= EXPECTED[i].length
+                     && EXPECTED[i][depth - 1] <= limit; depth++) {
+                long start = System.nanoTime();
+                long count = perft.count(position, depth);
+                nanos += System.nanoTime() - start;
+                nodes += count;
+                boolean ok = count == EXPECTED[i][depth - 1];
+                passed &= ok;
+                System.out.format("position %d depth %d: %d %s%n", i + 1,
+                                  depth, count, ok ? "ok"
+                                  : "FAIL, expected "
+                                  + EXPECTED[i][depth - 1]);
+            }
+        }
+        System.out.format("%d nodes in %.2f s (%.0f nodes/sec)%n", nodes,
+                          nanos / 1e9, nodes * 1e9 / nanos);
+        if (!passed) {
+            System.exit(1);
+        }
+    }
+}
@@ -0,0 +1,210 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ *Micro benchmarks for the hot paths of PgnReader: tag lookup, move
+ *separation, replay, piece lookup, FEN emission, file reading and
+ *header-only scanning.
+ *Each benchmark is warmed up and then timed over several fixed-length
+ *iterations on the same corpus of real and synthetic games, and
+ *reports operations per second and bytes allocated per operation so
+ *a change to the replay path can be compared against a baseline run.
+ *Usage: java PgnBenchmark [name filter] [corpus.pgn]
+ *@author Jordan Goldstein
+ *@version 1.0.0
+ */
+public class PgnBenchmark {
+    private static final long ITERATION_NANOS = 1_000_000_000L;
+    private static final int WARMUP_ITERATIONS = 3;
+    private static final int MEASURED_ITERATIONS = 5;
+
+    private static final String[] REAL_GAMES = {
+        "[Event \"Paris\"]\n[Site \"Paris FRA\"]\n[Date \"1858.??.??\"]\n"
+        + "[Round \"?\"]\n[White \"Paul Morphy\"]\n"
+        + "[Black \"Duke Karl / Count Isouard\"]\n[Result \"1-0\"]\n\n"
+        + "1. e4 e5 2. Nf3 d6 3. d4 Bg4 4. dxe5 Bxf3 5. Qxf3 dxe5 6. Bc4 Nf6\n"
+        + "7. Qb3 Qe7 8. Nc3 c6 9. Bg5 b5 10. Nxb5 cxb5 11. Bxb5+ Nbd7\n"
+        + "12. O-O-O Rd8 13. Rxd7 Rxd7 14. Rd1 Qe6 15. Bxd7+ Nxd7 16. Qb8+\n"
+        + "Nxb8 17. Rd8# 1-0\n",
+        "[Event \"London\"]\n[Site \"London ENG\"]\n[Date \"1851.06.21\"]\n"
+        + "[Round \"?\"]\n[White \"Adolf Anderssen\"]\n"
+        + "[Black \"Lionel Kieseritzky\"]\n[Result \"1-0\"]\n\n"
+        + "1.e4 e5 2.f4 exf4 3.Bc4 Qh4+ 4.Kf1 b5 5.Bxb5 Nf6 6.Nf3 Qh6 7.d3\n"
+        + "Nh5 8.Nh4 Qg5 9.Nf5 c6 10.g4 Nf6 11.Rg1 cxb5 12.h4 Qg6 13.h5 Qg5\n"
+        + "14.Qf3 Ng8 15.Bxf4 Qf6 16.Nc3 Bc5 17.Nd5 Qxb2 18.Bd6 Bxg1 19.e5\n"
+        + "Qxa1+ 20.Ke2 Na6 21.Nxg7+ Kd8 22.Qf6+ Nxf6 23.Be7# 1-0\n",
+        "[Event \"Berlin\"]\n[Site \"Berlin GER\"]\n[Date \"1852.??.??\"]\n"
+        + "[Round \"?\"]\n[White \"Adolf Anderssen\"]\n"
+        + "[Black \"Jean Dufresne\"]\n[Result \"1-0\"]\n\n"
+        + "1.e4 e5 2.Nf3 Nc6 3.Bc4 Bc5 4.b4 Bxb4 5.c3 Ba5 6.d4 exd4 7.O-O d3\n"
+        + "8.Qb3 Qf6 9.e5 Qg6 10.Re1 Nge7 11.Ba3 b5 12.Qxb5 Rb8 13.Qa4 Bb6\n"
+        + "14.Nbd2 Bb7 15.Ne4 Qf5 16.Bxd3 Qh5 17.Nf6+ gxf6 18.exf6 Rg8\n"
+        + "19.Rad1 Qxf3 20.Rxe7+ Nxe7 21.Qxd7+ Kxd7 22.Bf5+ Ke8 23.Bd7+ Kf8\n"
+        + "24.Bxe7# 1-0\n"
+    };
+
+    /**
+     *One benchmarked operation on one game
+     */
+    private interface Op {
+        int run(String game);
+    }
+
+    private static final com.sun.management.ThreadMXBean THREADS =
+        (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    //results are folded in here so the JIT cannot drop the work
+    private static volatile int sink;
+
+    public static void main(String[] args) throws IOException {
+        String filter = (args.length > 0) ? args[0] : "";
+        String[] corpus = (args.length > 1) ? load(Path.of(args[1]))
+            : corpus();
+        Path file = Files.createTempFile("pgnbench", ".pgn");
+        Files.write(file, String.join("\n", corpus)
+                    .getBytes(StandardCharsets.UTF_8));
+        String path = file.toString();
+        FenWriter writer = new FenWriter();
+        Position position = new GameReplayer().replay(corpus[0]);
+        System.out.format("%-16s %14s %10s %14s%n", "benchmark", "ops/s",
+                          "+-", "bytes/op");
+        try {
+            run(filter, "tagValue", corpus,
+                g -> PgnReader.tagValue("White", g).length());
+            run(filter, "headers", corpus,
+                g -> PgnHeaders.parse(g).size());
+            run(filter, "separateMoves", corpus,
+                g -> PgnReader.separateMoves(g).length);
+            run(filter, "finalPosition", corpus,
+                g -> PgnReader.finalPosition(g).length());
+            run(filter, "findPieces", corpus,
+                g -> PgnReader.findPieces('N').length);
+            run(filter, "choosePiece", corpus,
+                g -> PgnReader.choosePiece('N', new int[][] {{7, 1}, {7, 6}},
+                                           new int[] {5, 5}, "Nf3", 0)[1]);
+            run(filter, "fenEncode", corpus,
+                g -> writer.encode(position).length());
+            run(filter, "fileContent", new String[] {path},
+                p -> PgnReader.fileContent(p).length());
+            run(filter, "headerScan", new String[] {path},
+                PgnBenchmark::scanHeaders);
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    /**
+     *Read only the tag pairs of every game in the file at path
+     *return the number of games
+     */
+    private static int scanHeaders(String path) {
+        PgnHeaders headers = new PgnHeaders();
+        int games = 0;
+        try (PgnFileReader reader = new PgnFileReader(path)) {
+            while (reader.nextHeaders(headers)) {
+                games++;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return games;
+    }
+
+    /**
+     *Time op over corpus if its name matches the filter and print a row
+     */
+    private static void run(String filter, String name, String[] corpus,
+                            Op op) {
+        if (!name.contains(filter)) {
+            return;
+        }
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            iteration(corpus, op);
+        }
+        double[] rates = new double[MEASURED_ITERATIONS];
+        double bytes = 0;
+        for (int i = 0; i < MEASURED_ITERATIONS; i++) {
+            long allocated = THREADS.getThreadAllocatedBytes(
+                Thread.currentThread().getId());
+            long start = System.nanoTime();
+            long ops = iteration(corpus, op);
+            long elapsed = System.nanoTime() - start;
+            allocated = THREADS.getThreadAllocatedBytes(
+                Thread.currentThread().getId()) - allocated;
+            rates[i] = ops * 1e9 / elapsed;
+            bytes += (double) allocated / ops;
+        }
+        double mean = 0;
+        for (double rate : rates) {
+            mean += rate / rates.length;
+        }
+        double variance = 0;
+        for (double rate : rates) {
+            variance += (rate - mean) * (rate - mean) / (rates.length - 1);
+        }
+        System.out.format("%-16s %14.0f %10.0f %14.1f%n", name, mean,
+                          Math.sqrt(variance), bytes / MEASURED_ITERATIONS);
+    }
+
+    /**
+     *Run op over the corpus again and again for one iteration
+     *return the number of operations done
+     */
+    private static long iteration(String[] corpus, Op op) {
+        long deadline = System.nanoTime() + ITERATION_NANOS;
+        long ops = 0;
+        int acc = 0;
+        do {
+            for (String game : corpus) {
+                acc += op.run(game);
+            }
+            ops += corpus.length;
+        } while (System.nanoTime() < deadline);
+        sink = acc;
+        return ops;
+    }
+
+    /**
+     *The built in corpus: the real games plus synthetic ones of
+     *increasing length, including one over 99 moves
+     */
+    private static String[] corpus() {
+        List<String> games = new ArrayList<>();
+        for (String game : REAL_GAMES) {
+            games.add(game);
+        }
+        for (int length : new int[] {10, 40, 150}) {
+            StringBuilder sb = new StringBuilder();
+            sb.append("[Event \"Synthetic ").append(length).append("\"]\n");
+            sb.append("[White \"A\"]\n[Black \"B\"]\n[Result \"*\"]\n\n");
+            int move = 1;
+            sb.append(move++).append(". e4 e5 ");
+            for (int i = 0; i < length; i++) {
+                sb.append(move++).append(". Nf3 Nc6 ");
+                sb.append(move++).append(". Ng1 Nb8 ");
+            }
+            sb.append("*\n");
+            games.add(sb.toString());
+        }
+        return games.toArray(new String[games.size()]);
+    }
+
+    /**
+     *Read every game of a PGN file into memory
+     */
+    private static String[] load(Path file) throws IOException {
+        List<String> games = new ArrayList<>();
+        try (PgnFileReader reader = new PgnFileReader(file)) {
+            while (reader.hasNext()) {
+                games.add(reader.next());
+            }
+        }
+        return games.toArray(new String[games.size()]);
+    }
+}
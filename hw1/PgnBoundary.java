@@ -0,0 +1,164 @@
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ *Finds where one game of a PGN file ends and the next begins, without
+ *parsing either. Every game opens with its Event tag, so a line that
+ *starts with the whole tag name Event, then a space or tab and the
+ *opening quote of its value, starts a new game. Tags whose names only
+ *start with Event, such as the EventDate tag of most database exports,
+ *do not. Every reader splits games with this one test so they all agree.
+ *Run on its own, it checks the readers against inputs that have split
+ *games wrongly before.
+ *Usage: java PgnBoundary
+ *@author Jordan Goldstein
+ *@version 1.0.0
+ */
+public final class PgnBoundary {
+    /**The most bytes isEventTag() looks at past where the tag starts*/
+    public static final int LOOKAHEAD = 16;
+
+    private static final byte[] NAME = {'[', 'E', 'v', 'e', 'n', 't'};
+
+    //games that a test on the "[Event" prefix alone splits wrongly
+    private static final String EVENT_DATE =
+        "[Event \"Open\"]\n[EventDate \"2020.01.01\"]\n[Site \"?\"]\n"
+        + "[Result \"1-0\"]\n\n1. e4 e5 1-0\n\n"
+        + "[Event\t\"Open\"]\n[EventDate \"2020.01.01\"]\n[Result \"*\"]\n"
+        + "\n1. d4 *\n\n"
+        + "[Event \"Open\"]\n[EventType \"swiss\"]\n[Result \"*\"]\n\n"
+        + "1. c4 *\n";
+
+    private PgnBoundary() {
+    }
+
+    /**
+     *Check whether an Event tag starts at index i of buf
+     *@param buf the bytes to look in, read with absolute gets
+     *@param i the index of the [ that may open the tag
+     *@param limit the index to stop reading at
+     *@return true if buf[i, limit) starts with an Event tag; false if
+     *it does not, or if it is cut off by limit before it can tell
+     */
+    public static boolean isEventTag(ByteBuffer buf, int i, int limit) {
+        if (i + NAME.length >= limit) {
+            return false;
+        }
+        for (int j = 0; j < NAME.length; j++) {
+            if (buf.get(i + j) != NAME[j]) {
+                return false;
+            }
+        }
+        int j = i + NAME.length;
+        byte b = buf.get(j);
+        if (b != ' ' && b != '\t') {
+            return false;
+        }
+        int end = Math.min(limit, i + LOOKAHEAD);
+        while (j < end && (buf.get(j) == ' ' || buf.get(j) == '\t')) {
+            j++;
+        }
+        return j < end && buf.get(j) == '"';
+    }
+
+    /**
+     *Scan text with PgnFileReader.nextHeaders() and return the number
+     *of games that have every tag in tags
+     */
+    private static int headerGames(String text, String... tags)
+        throws IOException {
+        Path file = Files.createTempFile("pgnboundary", ".pgn");
+        try {
+            Files.write(file, text.getBytes(StandardCharsets.UTF_8));
+            int games = 0;
+            PgnHeaders headers = new PgnHeaders();
+            try (PgnFileReader reader = new PgnFileReader(file)) {
+                while (reader.nextHeaders(headers)) {
+                    boolean complete = true;
+                    for (String tag : tags) {
+                        complete &= headers.get(tag) != null;
+                    }
+                    games += complete ? 1 : 0;
+                }
+            }
+            return games;
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    /**
+     *Split text with PgnFileReader and return the number of games
+     */
+    private static int fileGames(String text) throws IOException {
+        Path file = Files.createTempFile("pgnboundary", ".pgn");
+        try {
+            Files.write(file, text.getBytes(StandardCharsets.UTF_8));
+            int games = 0;
+            try (PgnFileReader reader = new PgnFileReader(file)) {
+                while (reader.hasNext()) {
+                    reader.next();
+                    games++;
+                }
+            }
+            return games;
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    /**
+     *Split text with PgnStreamReader and return the number of games
+     */
+    private static int streamGames(String text) throws IOException {
+        int games = 0;
+        try (PgnStreamReader reader = new PgnStreamReader(
+                 new ByteArrayInputStream(
+                     text.getBytes(StandardCharsets.UTF_8)))) {
+            while (reader.hasNext()) {
+                reader.next();
+                games++;
+            }
+        }
+        return games;
+    }
+
+    /**
+     *Convert text with PgnService and return the number of games in
+     *the response
+     */
+    private static int serviceGames(String text) {
+        String json = PgnService.convert(
+            text.getBytes(StandardCharsets.UTF_8));
+        int games = 0;
+        for (int i = json.indexOf("{\"tags\""); i >= 0;
+             i = json.indexOf("{\"tags\"", i + 1)) {
+            games++;
+        }
+        return games;
+    }
+
+    private static boolean check(String name, int games, int expected) {
+        boolean ok = games == expected;
+        System.out.format("%s: %d games %s%n", name, games, ok ? "ok"
+                          : "FAIL, expected " + expected);
+        return ok;
+    }
+
+    public static void main(String[] args) throws IOException {
+        boolean passed = check("file reader, EventDate",
+                               fileGames(EVENT_DATE), 3);
+        passed &= check("header scan, EventDate",
+                        headerGames(EVENT_DATE, "Event", "Result"), 3);
+        passed &= check("stream reader, EventDate",
+                        streamGames(EVENT_DATE), 3);
+        passed &= check("service, EventDate", serviceGames(EVENT_DATE), 3);
+        if (!passed) {
+            System.exit(1);
+        }
+    }
+}
@@ -0,0 +1,285 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ *Streams the games of a (possibly huge) PGN file one at a time.
+ *The file is memory mapped a window at a time and game boundaries
+ *are found by looking for an [Event tag at the start of a line (see
+ *PgnBoundary), so only the game currently being handed out is ever
+ *copied onto the heap.
+ *Jobs that only need the tag pairs can use nextHeaders(), which never
+ *copies, decodes or tokenizes the movetext at all, and jobs that only
+ *want some of the games can use nextMatching(), which copies the
+ *movetext of just the games that pass.
+ *@author Jordan Goldstein
+ *@version 1.0.0
+ */
+public class PgnFileReader implements PgnSource {
+    private static final long WINDOW = 1L << 26;
+    private static final int OVERLAP = PgnBoundary.LOOKAHEAD + 1;
+
+    private final FileChannel channel;
+    private final long size;
+    private MappedByteBuffer window;
+    private long windowStart = -1;
+    private byte[] buffer = new byte[1 << 16];
+    private long next;
+    private long offset = -1;
+    private int length;
+
+    /**
+     *Opens the PGN file at path for reading
+     *@param path the relative or absolute path of the file to read
+     *@throws IOException if the file cannot be opened
+     */
+    public PgnFileReader(String path) throws IOException {
+        this(Paths.get(path));
+    }
+
+    /**
+     *Opens the PGN file for reading
+     *@param file the file to read
+     *@throws IOException if the file cannot be opened
+     */
+    public PgnFileReader(Path file) throws IOException {
+        channel = FileChannel.open(file, StandardOpenOption.READ);
+        size = channel.size();
+        next = skipBlank(0);
+    }
+
+    /**
+     *@return true if there is another game left in the file
+     */
+    public boolean hasNext() {
+        return next < size;
+    }
+
+    /**
+     *Returns the PGN text of the next game in the file
+     *@return the next game
+     */
+    public String next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        long end = nextBoundary(next + 1);
+        copy(next, end);
+        offset = next;
+        next = skipBlank(end);
+        return new String(buffer, 0, length, StandardCharsets.UTF_8);
+    }
+
+    /**
+     *Parse the tag pairs of the next game into headers and skip over
+     *its movetext. Only the tag section is copied off the mapped file;
+     *the end of the game is found with the same raw byte search for
+     *the next [Event tag that next() uses, so scanning a file for its
+     *headers runs at close to the speed it can be read.
+     *@param headers where to put the tag pairs, cleared first
+     *@return false, leaving headers untouched, if no games are left
+     */
+    public boolean nextHeaders(PgnHeaders headers) {
+        if (!hasNext()) {
+            return false;
+        }
+        long tagsEnd = tagSectionEnd(next);
+        copy(next, tagsEnd);
+        headers.read(new String(buffer, 0, length, StandardCharsets.UTF_8),
+                     0, length);
+        long end = nextBoundary(Math.max(next + 1, tagsEnd - 1));
+        offset = next;
+        length = (int) Math.min(end - next, Integer.MAX_VALUE);
+        next = skipBlank(end);
+        return true;
+    }
+
+    /**
+     *Skip ahead to the next game whose tag pairs pass filter. Only the
+     *tag section of each game is copied and parsed until one passes;
+     *the movetext of the games passed over is never read.
+     *@param filter the games to return, such as a TagQuery
+     *@param headers where to put the tag pairs of the game returned
+     *@return the PGN text of the next game to pass, or null if none of
+     *the games left do
+     */
+    public String nextMatching(Predicate<PgnHeaders> filter,
+                               PgnHeaders headers) {
+        while (nextHeaders(headers)) {
+            if (filter.test(headers)) {
+                copy(offset, offset + length);
+                return new String(buffer, 0, length, StandardCharsets.UTF_8);
+            }
+        }
+        return null;
+    }
+
+    /**
+     *@return the byte offset in the file of the last game returned
+     */
+    public long offset() {
+        return offset;
+    }
+
+    /**
+     *@return the length in bytes of the last game returned, including
+     *its movetext even if it was skipped by nextHeaders()
+     */
+    public int length() {
+        return length;
+    }
+
+    /**
+     *@return the size of the underlying file in bytes
+     */
+    public long size() {
+        return size;
+    }
+
+    /**
+     *Returns the rest of the games in the file as a sequential stream.
+     *Closing the stream closes this reader.
+     *@return a stream of the remaining games
+     */
+    public Stream<String> games() {
+        Spliterator<String> split = Spliterators.spliteratorUnknownSize(this,
+            Spliterator.ORDERED | Spliterator.NONNULL);
+        return StreamSupport.stream(split, false).onClose(() -> {
+                try {
+                    close();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+    }
+
+    /**
+     *Releases the file handle
+     */
+    public void close() throws IOException {
+        window = null;
+        channel.close();
+    }
+
+    /**
+     *Find the start of the next game at or after from
+     *return the size of the file if there is none
+     */
+    private long nextBoundary(long from) {
+        long pos = from;
+        while (pos < size) {
+            map(pos);
+            int limit = (int) Math.min(WINDOW, size - windowStart);
+            for (int i = (int) (pos - windowStart); i < limit; i++) {
+                if (window.get(i) == '\n'
+                    && PgnBoundary.isEventTag(window, i + 1,
+                                              window.limit())) {
+                    return windowStart + i + 1;
+                }
+            }
+            pos = windowStart + limit;
+        }
+        return size;
+    }
+
+    /**
+     *Find the end of the tag section of the game starting at from:
+     *the first line that does not open with a tag, or the [Event tag
+     *of the next game if this one has no movetext
+     */
+    private long tagSectionEnd(long from) {
+        long pos = from;
+        boolean first = true;
+        while (pos < size) {
+            map(pos);
+            int i = (int) (pos - windowStart);
+            byte b = window.get(i);
+            if (b == ' ' || b == '\n' || b == '\r' || b == '\t') {
+                pos++;
+                continue;
+            }
+            if (b != '[' || (!first && PgnBoundary.isEventTag(
+                                 window, i, window.limit()))) {
+                return pos;
+            }
+            first = false;
+            while (pos < size) {
+                map(pos);
+                if (window.get((int) (pos++ - windowStart)) == '\n') {
+                    break;
+                }
+            }
+        }
+        return size;
+    }
+
+    /**
+     *Skip whitespace between games so trailing blank lines
+     *are not handed out as a game of their own
+     */
+    private long skipBlank(long from) {
+        long pos = from;
+        while (pos < size) {
+            map(pos);
+            byte b = window.get((int) (pos - windowStart));
+            if (b != ' ' && b != '\n' && b != '\r' && b != '\t') {
+                return pos;
+            }
+            pos++;
+        }
+        return size;
+    }
+
+    /**
+     *Copy the bytes in [start, end) into the reusable buffer
+     */
+    private void copy(long start, long end) {
+        long len = end - start;
+        if (len > Integer.MAX_VALUE - 8) {
+            throw new IllegalStateException("Game at " + start
+                + " is too large");
+        }
+        length = (int) len;
+        if (buffer.length < length) {
+            buffer = new byte[Math.max(length, buffer.length * 2)];
+        }
+        long pos = start;
+        int filled = 0;
+        while (pos < end) {
+            map(pos);
+            int from = (int) (pos - windowStart);
+            int count = (int) Math.min(end - pos, window.limit() - from);
+            window.get(from, buffer, filled, count);
+            filled += count;
+            pos += count;
+        }
+    }
+
+    /**
+     *Make sure the byte at pos is inside the mapped window
+     */
+    private void map(long pos) {
+        if (window != null && pos >= windowStart
+            && pos < windowStart + Math.min(WINDOW, size - windowStart)) {
+            return;
+        }
+        long length = Math.min(WINDOW + OVERLAP, size - pos);
+        try {
+            window = channel.map(FileChannel.MapMode.READ_ONLY, pos, length);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        windowStart = pos;
+    }
+}
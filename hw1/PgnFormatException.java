@@ -0,0 +1,15 @@
+/**
+ *Is thrown when PGN text cannot be understood, such as a move that
+ *is malformed or that no piece on the board is able to make.
+ *Un-checked exception:
+ *a bad game should be reported by whoever is reading the games
+ *without every caller having to declare it
+ *@author Jordan Goldstein
+ */
+public class PgnFormatException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    public PgnFormatException(String msg) {
+        super(msg);
+    }
+}
@@ -0,0 +1,199 @@
+import java.util.Arrays;
+
+/**
+ *The tag pairs of a PGN game, parsed in a single pass over the
+ *tag section and indexed by name for constant time lookup.
+ *@author Jordan Goldstein
+ *@version 1.0.0
+ */
+public class PgnHeaders {
+    private String[] names = new String[8];
+    private String[] values = new String[8];
+    private int[] table = new int[16];
+    private int count;
+    private int movetextStart;
+
+    /**
+     *Parse the tag section at the start of game
+     *@param game a `CharSequence` containing the PGN text of a chess game
+     *@return the tag pairs of the game
+     */
+    public static PgnHeaders parse(CharSequence game) {
+        PgnHeaders headers = new PgnHeaders();
+        headers.read(game, 0, game.length());
+        return headers;
+    }
+
+    /**
+     *Clear these headers and parse the tag section of game[from, to)
+     *into them, so one instance can be reused for many games
+     *@param game the text holding the game
+     *@param from the index the game starts at
+     *@param to the index the game ends at
+     *@return this
+     */
+    public PgnHeaders read(CharSequence game, int from, int to) {
+        clear();
+        int i = from;
+        while (i < to) {
+            char c = game.charAt(i);
+            if (c == '[') {
+                i = readTag(game, i + 1, to);
+            } else if (c == ' ' || c == '\n' || c == '\r' || c == '\t') {
+                i++;
+            } else {
+                break;
+            }
+        }
+        movetextStart = i;
+        return this;
+    }
+
+    /**
+     *Read one tag pair whose name starts at i
+     *return the index just past its closing bracket
+     */
+    private int readTag(CharSequence game, int i, int to) {
+        int nameStart = i;
+        while (i < to && game.charAt(i) > ' ' && game.charAt(i) != '"'
+               && game.charAt(i) != ']') {
+            i++;
+        }
+        int nameEnd = i;
+        while (i < to && game.charAt(i) != '"' && game.charAt(i) != ']') {
+            i++;
+        }
+        String value = "";
+        if (i < to && game.charAt(i) == '"') {
+            StringBuilder sb = null;
+            int valueStart = ++i;
+            while (i < to && game.charAt(i) != '"') {
+                if (game.charAt(i) == '\\' && i + 1 < to) {
+                    if (sb == null) {
+                        sb = new StringBuilder();
+                        sb.append(game, valueStart, i);
+                    }
+                    i++;
+                }
+                if (sb != null) {
+                    sb.append(game.charAt(i));
+                }
+                i++;
+            }
+            value = (sb == null) ? game.subSequence(valueStart, i).toString()
+                : sb.toString();
+        }
+        while (i < to && game.charAt(i) != ']') {
+            i++;
+        }
+        if (nameEnd > nameStart) {
+            put(game.subSequence(nameStart, nameEnd).toString(), value);
+        }
+        return i + 1;
+    }
+
+    /**
+     *Add a tag pair, replacing the value if the name is already present
+     *@param name the tag name
+     *@param value the tag value
+     */
+    public void put(String name, String value) {
+        int slot = slot(name);
+        if (table[slot] != 0) {
+            values[table[slot] - 1] = value;
+            return;
+        }
+        if (count == names.length) {
+            names = Arrays.copyOf(names, count * 2);
+            values = Arrays.copyOf(values, count * 2);
+        }
+        names[count] = name;
+        values[count] = value;
+        table[slot] = ++count;
+        if (count * 2 > table.length) {
+            rehash();
+        }
+    }
+
+    /**
+     *@param name the name of the tag whose value you want
+     *@return the value in the named tag pair, or null if there is none
+     */
+    public String get(String name) {
+        int index = table[slot(name)];
+        return (index == 0) ? null : values[index - 1];
+    }
+
+    /**
+     *@param name the name of the tag whose value you want
+     *@param missing what to return if the tag is not present
+     *@return the value in the named tag pair, or missing
+     */
+    public String get(String name, String missing) {
+        String value = get(name);
+        return (value == null) ? missing : value;
+    }
+
+    /**
+     *@return the number of tag pairs
+     */
+    public int size() {
+        return count;
+    }
+
+    /**
+     *@param i the index of a tag pair, in the order they appear
+     *@return the name of the i-th tag pair
+     */
+    public String name(int i) {
+        return names[i];
+    }
+
+    /**
+     *@param i the index of a tag pair, in the order they appear
+     *@return the value of the i-th tag pair
+     */
+    public String value(int i) {
+        return values[i];
+    }
+
+    /**
+     *@return the index in the game text where the movetext begins
+     */
+    public int movetextStart() {
+        return movetextStart;
+    }
+
+    /**
+     *Remove every tag pair
+     */
+    public void clear() {
+        Arrays.fill(names, 0, count, null);
+        Arrays.fill(values, 0, count, null);
+        Arrays.fill(table, 0);
+        count = 0;
+        movetextStart = 0;
+    }
+
+    /**
+     *Find the slot in table holding name, or the empty slot it belongs in
+     */
+    private int slot(String name) {
+        int mask = table.length - 1;
+        int slot = (name.hashCode() * 0x9E3779B9) >>> 16 & mask;
+        while (table[slot] != 0 && !names[table[slot] - 1].equals(name)) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    /**
+     *Double the index table and reinsert every name
+     */
+    private void rehash() {
+        table = new int[table.length * 2];
+        for (int i = 0; i < count; i++) {
+            table[slot(names[i])] = i + 1;
+        }
+    }
+}
@@ -0,0 +1,290 @@
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ *Counters and latency histograms for parsing and replaying games.
+ *Every thread records into a Recorder of its own with plain field
+ *writes, so the hot path never contends or fences; the recorders are
+ *only merged when someone reads the totals. Recorders of threads that
+ *have died are folded into a single retired total as they are found.
+ *Read the totals through JMX as pgn:type=PgnMetrics once install() has
+ *been called, or have them dumped to stderr every few seconds by
+ *setting the pgn.metrics.period system property to the period.
+ *@author Jordan Goldstein
+ *@version 1.0.0
+ */
+public class PgnMetrics implements PgnMetricsMBean {
+    public static final int TAGS = 0;
+    public static final int TOKENIZE = 1;
+    public static final int REPLAY = 2;
+    public static final int FEN = 3;
+
+    private static final String[] STAGES = {"tags", "tokenize", "replay",
+                                            "fen"};
+    private static final int BUCKETS = 64;
+    //how many recorders may pile up before dead threads are first swept
+    private static final int SWEEP = 256;
+    private static final String NAME = "pgn:type=PgnMetrics";
+
+    private static final PgnMetrics INSTANCE = new PgnMetrics();
+
+    /**
+     *The counters of one thread. Only the owning thread writes to it.
+     */
+    public static final class Recorder {
+        private final Thread owner;
+        private long games;
+        private long plies;
+        private long errors;
+        private final long[] nanos = new long[STAGES.length];
+        //the part of nanos spent on the games in histogram
+        private final long[] sampled = new long[STAGES.length];
+        //histogram[stage][b] counts games that took [2^b, 2^(b+1)) ns
+        private final long[][] histogram = new long[STAGES.length][BUCKETS];
+
+        private Recorder(Thread owner) {
+            this.owner = owner;
+        }
+
+        /**
+         *Record the time one game spent in a stage
+         *@param stage TAGS, TOKENIZE, REPLAY or FEN
+         *@param elapsed the nanoseconds spent
+         */
+        public void time(int stage, long elapsed) {
+            nanos[stage] += elapsed;
+            sampled[stage] += elapsed;
+            histogram[stage][63 - Long.numberOfLeadingZeros(elapsed | 1)]++;
+        }
+
+        /**
+         *Add time spent in a stage to its total, for a game recorded a
+         *piece at a time; the game is left out of the stage's histogram
+         *@param stage TAGS, TOKENIZE, REPLAY or FEN
+         *@param elapsed the nanoseconds spent
+         */
+        public void add(int stage, long elapsed) {
+            nanos[stage] += elapsed;
+        }
+
+        /**
+         *Record one game replayed
+         *@param moves the number of moves it had
+         */
+        public void game(int moves) {
+            games++;
+            plies += moves;
+        }
+
+        /**
+         *Record one move played outside of a whole game replay
+         */
+        public void ply() {
+            plies++;
+        }
+
+        /**
+         *Record a game with a move that could not be played
+         */
+        public void error() {
+            errors++;
+        }
+
+        private void add(Recorder other) {
+            games += other.games;
+            plies += other.plies;
+            errors += other.errors;
+            for (int s = 0; s < STAGES.length; s++) {
+                nanos[s] += other.nanos[s];
+                sampled[s] += other.sampled[s];
+                for (int b = 0; b < BUCKETS; b++) {
+                    histogram[s][b] += other.histogram[s][b];
+                }
+            }
+        }
+    }
+
+    private final Queue<Recorder> recorders = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger live = new AtomicInteger();
+    private volatile int sweepAt = SWEEP;
+    private final Recorder retired = new Recorder(null);
+    private final ThreadLocal<Recorder> local =
+        ThreadLocal.withInitial(this::newRecorder);
+
+    private PgnMetrics() {
+    }
+
+    /**
+     *@return the metrics of this JVM
+     */
+    public static PgnMetrics get() {
+        return INSTANCE;
+    }
+
+    /**
+     *@return the recorder of the calling thread
+     */
+    public static Recorder recorder() {
+        return INSTANCE.local.get();
+    }
+
+    /**
+     *Register the metrics with the platform MBean server, and start
+     *dumping them to stderr if the pgn.metrics.period system property
+     *holds a period in seconds. Calling it again does nothing.
+     */
+    public static void install() {
+        try {
+            ManagementFactory.getPlatformMBeanServer()
+                .registerMBean(INSTANCE, new ObjectName(NAME));
+        } catch (InstanceAlreadyExistsException e) {
+            return;
+        } catch (JMException e) {
+            throw new IllegalStateException(e);
+        }
+        long period = Long.getLong("pgn.metrics.period", 0);
+        if (period > 0) {
+            INSTANCE.dumpEvery(period, System.err);
+        }
+    }
+
+    /**
+     *Print dump() to out every period seconds from a daemon thread
+     *@param period the seconds between dumps
+     *@param out where to print
+     */
+    public void dumpEvery(long period, PrintStream out) {
+        ScheduledExecutorService timer =
+            Executors.newSingleThreadScheduledExecutor(r -> {
+                    Thread thread = new Thread(r, "pgn-metrics");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        timer.scheduleAtFixedRate(() -> out.print(dump()), period, period,
+                                  TimeUnit.SECONDS);
+    }
+
+    public long getGamesParsed() {
+        return total().games;
+    }
+
+    public long getPliesReplayed() {
+        return total().plies;
+    }
+
+    public long getParseErrors() {
+        return total().errors;
+    }
+
+    public long getTagNanos() {
+        return total().nanos[TAGS];
+    }
+
+    public long getTokenizeNanos() {
+        return total().nanos[TOKENIZE];
+    }
+
+    public long getReplayNanos() {
+        return total().nanos[REPLAY];
+    }
+
+    public long getFenNanos() {
+        return total().nanos[FEN];
+    }
+
+    public long percentileNanos(String stage, double quantile) {
+        for (int s = 0; s < STAGES.length; s++) {
+            if (STAGES[s].equals(stage)) {
+                return percentile(total().histogram[s], quantile);
+            }
+        }
+        throw new IllegalArgumentException("No stage named " + stage);
+    }
+
+    public String dump() {
+        Recorder total = total();
+        StringBuilder sb = new StringBuilder(512);
+        sb.append(String.format("games %d  plies %d  errors %d%n",
+                                total.games, total.plies, total.errors));
+        sb.append(String.format("%-10s %12s %10s %10s %10s%n", "stage",
+                                "total ms", "mean ns", "p50 ns", "p99 ns"));
+        for (int s = 0; s < STAGES.length; s++) {
+            long count = 0;
+            for (long n : total.histogram[s]) {
+                count += n;
+            }
+            sb.append(String.format("%-10s %12.1f %10d %10d %10d%n",
+                STAGES[s], total.nanos[s] / 1e6,
+                (count == 0) ? 0 : total.sampled[s] / count,
+                percentile(total.histogram[s], 0.5),
+                percentile(total.histogram[s], 0.99)));
+        }
+        return sb.toString();
+    }
+
+    /**
+     *The upper bound of the bucket holding the given quantile
+     */
+    private static long percentile(long[] buckets, double quantile) {
+        long count = 0;
+        for (long n : buckets) {
+            count += n;
+        }
+        long rank = (long) Math.ceil(quantile * count);
+        long seen = 0;
+        for (int b = 0; b < BUCKETS; b++) {
+            seen += buckets[b];
+            if (seen >= rank && seen > 0) {
+                return (b == BUCKETS - 1) ? Long.MAX_VALUE : 1L << (b + 1);
+            }
+        }
+        return 0;
+    }
+
+    /**
+     *Merge every recorder into a fresh total, retiring those of dead
+     *threads on the way
+     */
+    private synchronized Recorder total() {
+        Recorder total = new Recorder(null);
+        for (Iterator<Recorder> it = recorders.iterator(); it.hasNext();) {
+            Recorder recorder = it.next();
+            if (recorder.owner.isAlive()) {
+                total.add(recorder);
+            } else {
+                //a thread's writes are visible once it is seen dead
+                retired.add(recorder);
+                it.remove();
+                live.decrementAndGet();
+            }
+        }
+        total.add(retired);
+        return total;
+    }
+
+    private synchronized void sweep() {
+        total();
+        sweepAt = Math.max(SWEEP, live.get() * 2);
+    }
+
+    private Recorder newRecorder() {
+        if (live.incrementAndGet() > sweepAt) {
+            //short lived threads, such as one per request, would
+            //otherwise keep adding recorders until the next read
+            sweep();
+        }
+        Recorder recorder = new Recorder(Thread.currentThread());
+        recorders.add(recorder);
+        return recorder;
+    }
+}
@@ -0,0 +1,56 @@
+/**
+ *The management interface of PgnMetrics: how much work the PGN readers
+ *in this JVM have done and where their time went. Stage names for
+ *percentileNanos() are "tags", "tokenize", "replay" and "fen".
+ *@author Jordan Goldstein
+ *@version 1.0.0
+ */
+public interface PgnMetricsMBean {
+    /**
+     *@return the number of games replayed
+     */
+    long getGamesParsed();
+
+    /**
+     *@return the number of moves played
+     */
+    long getPliesReplayed();
+
+    /**
+     *@return the number of games with a move that could not be played
+     */
+    long getParseErrors();
+
+    /**
+     *@return the total nanoseconds spent parsing tag pairs
+     */
+    long getTagNanos();
+
+    /**
+     *@return the total nanoseconds spent splitting movetext into moves
+     */
+    long getTokenizeNanos();
+
+    /**
+     *@return the total nanoseconds spent playing moves
+     */
+    long getReplayNanos();
+
+    /**
+     *@return the total nanoseconds spent encoding FENs
+     */
+    long getFenNanos();
+
+    /**
+     *@param stage the name of a stage
+     *@param quantile between 0 and 1, such as 0.99
+     *@return an upper bound on the given quantile of the time one game
+     *spent in the stage, within a factor of two
+     */
+    long percentileNanos(String stage, double quantile);
+
+    /**
+     *@return every counter and latency summary as text
+     */
+    String dump();
+}
@@ -0,0 +1,324 @@
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+
+/**
+ *Runs the games of a PGN file through three overlapping stages: a
+ *reader thread splitting the file into games, a pool of workers
+ *parsing and replaying them, and the calling thread writing the
+ *results in input order. The stages are joined by bounded queues and
+ *at most capacity games are ever between the reader and the writer,
+ *so a slow disk starves the workers and a slow sink stalls the reader
+ *instead of piling games up on the heap.
+ *Usage: java PgnPipeline games.pgn [threads] [fen]
+ *@author Jordan Goldstein
+ *@version 1.0.0
+ */
+public class PgnPipeline {
+    /**
+     *The work done on each game by the worker stage. Called from many
+     *threads at once, so implementations must be thread safe.
+     */
+    public interface Stage {
+        /**
+         *@param game a `String` containing a PGN-formatted chess game
+         *@return the text to write for the game, or null for nothing
+         */
+        String process(String game);
+    }
+
+    /**
+     *One game on its way through the pipeline
+     */
+    private static class Item {
+        private final long seq;
+        private final long offset;
+        private String text;
+
+        Item(long seq, long offset, String text) {
+            this.seq = seq;
+            this.offset = offset;
+            this.text = text;
+        }
+    }
+
+    //sent once per worker by the reader, and on by each worker
+    private static final Item END = new Item(-1, -1, null);
+    //sent instead of END by a worker that died holding a game
+    private static final Item DIED = new Item(-1, -1, null);
+
+    private final int workers;
+    private final int capacity;
+    private final ErrorSink sink;
+    private final LongAdder errors = new LongAdder();
+    private final AtomicReference<Throwable> failure =
+        new AtomicReference<>();
+    private long games;
+
+    /**
+     *Creates a pipeline that reports the games it skips on stderr
+     *@param workers the number of worker threads
+     *@param capacity the most games in flight at once, at least workers
+     *@throws IllegalArgumentException if there are no workers, or more
+     *workers than games to keep them busy
+     */
+    public PgnPipeline(int workers, int capacity) {
+        this(workers, capacity, ErrorSink.printingTo(System.err));
+    }
+
+    /**
+     *Creates a pipeline
+     *@param workers the number of worker threads
+     *@param capacity the most games in flight at once, at least workers
+     *@param sink where to report the games the stage throws on
+     *@throws IllegalArgumentException if there are no workers, or more
+     *workers than games to keep them busy
+     */
+    public PgnPipeline(int workers, int capacity, ErrorSink sink) {
+        if (workers < 1 || capacity < workers) {
+            throw new IllegalArgumentException(workers + " workers with "
+                                               + capacity + " games in "
+                                               + "flight");
+        }
+        this.workers = workers;
+        this.capacity = capacity;
+        this.sink = sink;
+    }
+
+    /**
+     *@return the number of games the last run got through
+     */
+    public long games() {
+        return games;
+    }
+
+    /**
+     *@return the number of games the stage threw on
+     */
+    public long errors() {
+        return errors.sum();
+    }
+
+    /**
+     *Process every game of a PGN file and append the results to out in
+     *the order the games appear in the file. Games the stage throws on
+     *are reported to the error sink and skipped.
+     *@param file the PGN file to read
+     *@param stage the work to do on each game
+     *@param out where to write the results
+     *@throws IOException if the file cannot be read or out fails
+     *@throws InterruptedException if interrupted while waiting
+     */
+    public void run(Path file, Stage stage, Appendable out)
+        throws IOException, InterruptedException {
+        run(file, null, stage, out);
+    }
+
+    /**
+     *Process the games of a PGN file that pass filter and append the
+     *results to out in the order the games appear in the file. The
+     *filter is checked by the reader as each game's tag pairs are
+     *scanned, so the games that fail it never reach the workers.
+     *@param file the PGN file to read
+     *@param filter the games to process, or null for all of them
+     *@param stage the work to do on each game
+     *@param out where to write the results
+     *@throws IOException if the file cannot be read or out fails
+     *@throws InterruptedException if interrupted while waiting
+     *@throws Error if the reader or a worker died of one, such as an
+     *OutOfMemoryError, after the other threads have been stopped
+     */
+    public void run(Path file, Predicate<PgnHeaders> filter, Stage stage,
+                    Appendable out)
+        throws IOException, InterruptedException {
+        //room for every game in flight and one marker per worker, so
+        //END and DIED are always offered without blocking, even after
+        //the thread that would take them has stopped
+        BlockingQueue<Item> toWorkers =
+            new ArrayBlockingQueue<>(capacity + workers);
+        BlockingQueue<Item> toWriter =
+            new ArrayBlockingQueue<>(capacity + workers);
+        Semaphore inFlight = new Semaphore(capacity);
+        Thread[] threads = new Thread[workers + 1];
+        threads[0] = new Thread(
+            () -> read(file, filter, toWorkers, inFlight), "pgn-reader");
+        for (int i = 1; i <= workers; i++) {
+            threads[i] = new Thread(
+                () -> work(file, stage, toWorkers, toWriter),
+                "pgn-worker-" + i);
+        }
+        failure.set(null);
+        games = 0;
+        for (Thread thread : threads) {
+            thread.setDaemon(true);
+            thread.start();
+        }
+        try {
+            write(toWriter, inFlight, out);
+        } finally {
+            for (Thread thread : threads) {
+                thread.interrupt();
+            }
+        }
+        Throwable failed = failure.get();
+        if (failed instanceof IOException) {
+            throw (IOException) failed;
+        } else if (failed instanceof RuntimeException) {
+            throw (RuntimeException) failed;
+        } else if (failed instanceof Error) {
+            throw (Error) failed;
+        } else if (failed != null) {
+            throw new IllegalStateException(failed);
+        }
+    }
+
+    /**
+     *The reader stage: hand out games in order, waiting for room
+     *whenever capacity games are in flight
+     */
+    private void read(Path file, Predicate<PgnHeaders> filter,
+                      BlockingQueue<Item> toWorkers, Semaphore inFlight) {
+        try {
+            try (PgnSource reader = PgnSource.open(file)) {
+                PgnHeaders headers = new PgnHeaders();
+                long seq = 0;
+                while (true) {
+                    inFlight.acquire();
+                    String game;
+                    if (filter != null) {
+                        game = reader.nextMatching(filter, headers);
+                    } else {
+                        game = reader.hasNext() ? reader.next() : null;
+                    }
+                    if (game == null) {
+                        break;
+                    }
+                    toWorkers.put(new Item(seq++, reader.offset(), game));
+                }
+            } catch (IOException e) {
+                failure.compareAndSet(null, e);
+            } catch (UncheckedIOException e) {
+                failure.compareAndSet(null, e.getCause());
+            } catch (RuntimeException | Error e) {
+                failure.compareAndSet(null, e);
+            }
+        } catch (InterruptedException e) {
+            //the writer has given up, so nobody is waiting for the rest
+        } finally {
+            //sent however the reader stops, or the workers would
+            //wait for more games forever
+            for (int i = 0; i < workers; i++) {
+                toWorkers.offer(END);
+            }
+        }
+    }
+
+    /**
+     *The worker stage: run stage on each game until the reader is done
+     */
+    private void work(Path file, Stage stage, BlockingQueue<Item> toWorkers,
+                      BlockingQueue<Item> toWriter) {
+        Item end = END;
+        try {
+            Item item;
+            while ((item = toWorkers.take()) != END) {
+                try {
+                    item.text = stage.process(item.text);
+                } catch (RuntimeException e) {
+                    sink.error(file, item.offset, e.toString());
+                    errors.increment();
+                    item.text = null;
+                }
+                toWriter.put(item);
+            }
+        } catch (InterruptedException e) {
+            //the writer has given up
+        } catch (RuntimeException | Error e) {
+            //the game this worker held never reaches the writer,
+            //so the whole run has to stop
+            failure.compareAndSet(null, e);
+            end = DIED;
+        } finally {
+            toWriter.offer(end);
+        }
+    }
+
+    /**
+     *The writer stage: put results back in input order and write them.
+     *Fewer than capacity games are ever in flight, so each one has a
+     *slot of its own in pending. If the reader failed, every game it
+     *read is still written before the writer stops; if a worker died,
+     *the writer stops at once, since the game it held will never come.
+     */
+    private void write(BlockingQueue<Item> toWriter, Semaphore inFlight,
+                       Appendable out)
+        throws IOException, InterruptedException {
+        Item[] pending = new Item[capacity];
+        int ended = 0;
+        while (ended < workers) {
+            Item item = toWriter.take();
+            if (item == DIED) {
+                return;
+            }
+            if (item == END) {
+                ended++;
+                continue;
+            }
+            pending[(int) (item.seq % capacity)] = item;
+            int slot = (int) (games % capacity);
+            while (pending[slot] != null) {
+                if (pending[slot].text != null) {
+                    out.append(pending[slot].text);
+                }
+                pending[slot] = null;
+                inFlight.release();
+                slot = (int) (++games % capacity);
+            }
+        }
+    }
+
+    public static void main(String[] args) {
+        int threads = (args.length > 1) ? Integer.parseInt(args[1])
+            : Runtime.getRuntime().availableProcessors();
+        Stage stage = PgnReader::describe;
+        if (args.length > 2 && args[2].equals("fen")) {
+            ThreadLocal<GameReplayer> replayers =
+                ThreadLocal.withInitial(GameReplayer::new);
+            stage = game -> {
+                GameReplayer replayer = replayers.get();
+                replayer.replay(game);
+                return replayer.fen() + "\n";
+            };
+        }
+        PrintWriter out = new PrintWriter(new BufferedWriter(
+            new OutputStreamWriter(System.out, StandardCharsets.UTF_8)));
+        PgnPipeline pipeline = new PgnPipeline(threads, 1024);
+        PgnMetrics.install();
+        long start = System.nanoTime();
+        try {
+            pipeline.run(Paths.get(args[0]), stage, out);
+        } catch (IOException e) {
+            System.err.format("IOException: %s%n", e);
+            System.exit(1);
+        } catch (InterruptedException e) {
+            System.exit(1);
+        } finally {
+            out.flush();
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.err.format("%d games in %.2f s (%.0f games/sec) on %d "
+                          + "threads%n", pipeline.games(), seconds,
+                          pipeline.games() / seconds, threads);
+    }
+}
@@ -1,18 +1,20 @@
 import java.io.BufferedReader;
+import java.io.BufferedWriter;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.Arrays;
+import java.util.Locale;
 public class PgnReader {
-    private static char[][] board = {{'r', 'n', 'b', 'q', 'k', 'b', 'n', 'r'},
-                                     {'p', 'p', 'p', 'p', 'p', 'p', 'p', 'p'},
-                                     {' ', ' ', ' ', ' ', ' ', ' ', ' ', ' '},
-                                     {' ', ' ', ' ', ' ', ' ', ' ', ' ', ' '},
-                                     {' ', ' ', ' ', ' ', ' ', ' ', ' ', ' '},
-                                     {' ', ' ', ' ', ' ', ' ', ' ', ' ', ' '},
-                                     {'P', 'P', 'P', 'P', 'P', 'P', 'P', 'P'},
-                                     {'R', 'N', 'B', 'Q', 'K', 'B', 'N', 'R'}};
+    //the static methods below replay on a per-thread GameReplayer
+    //so they stay safe to call from several threads at once
+    private static final ThreadLocal<GameReplayer> REPLAYER =
+        ThreadLocal.withInitial(GameReplayer::new);
     /**
      * Find the tagName tag pair in a PGN game and return its value.
      *
@@ -23,16 +25,7 @@ public class PgnReader {
      * @return the value in the named tag pair
      */
     public static String tagValue(String tagName, String game) {
-        String toReturn = "NOT GIVEN";
-        if (game.contains(tagName)) {
-            int startPoint = game.indexOf(tagName);
-            int endPoint = game.indexOf("]", startPoint);
-            toReturn = game.substring(startPoint, endPoint);
-            startPoint = toReturn.indexOf("\"");
-            endPoint = toReturn.lastIndexOf("\"");
-            toReturn = toReturn.substring(++startPoint, endPoint);
-        }
-        return toReturn;
+        return PgnHeaders.parse(game).get(tagName, "NOT GIVEN");
     }
 
     /**
@@ -45,87 +38,7 @@ public class PgnReader {
      * @return the game's final position in FEN.
      */
     public static String finalPosition(String game) {
-        String[] moves = separateMoves(game);
-        int[][] coordinatesOfPieces;
-        int[] coordinatesOfPiece;
-        int[] coordsOfMove = new int[2];
-        char piece = ' ';
-        String finalInFEN = "";
-        int spaceCounter = 0;
-        for (int i = 0; i < moves.length; i++) {
-            //Debug 3
-            //System.out.println("Move: " + moves[i]);
-            if (isSpecialMove(moves[i])) {
-                doSpecialMove(moves[i], i);
-            } else {
-                piece = decidePiece(moves[i], i);
-                coordsOfMove = moveCoords(moves[i]);
-                coordinatesOfPieces = findPieces(piece);
-                coordinatesOfPiece = choosePiece(piece, coordinatesOfPieces,
-                                                 coordsOfMove, moves[i], i);
-            //Debug Code
-            /*System.out.println(moves[i]);
-            System.out.println(coordsOfMove[0] + ", " + coordsOfMove[1] +
-            " Move");
-            for (int j[] : coordinatesOfPieces) {
-                System.out.println(j[0] + ", " + j[1]);
-            }
-            System.out.println(piece);
-            System.out.println(coordinatesOfPiece[0] + " " +
-            coordinatesOfPiece[1]);*/
-            //Debug End
-                board[coordsOfMove[0]][coordsOfMove[1]] = piece;
-                board[coordinatesOfPiece[0]][coordinatesOfPiece[1]] = ' ';
-                finalInFEN = "";
-            //Debug Code pt2
-            /*
-            for (char[] k : board) {
-                for(char j : k) {
-                    if (j == ' ') {
-                    spaceCounter++;
-                    } else {
-                        if ( spaceCounter > 0) {
-                            finalInFEN += spaceCounter + Character.toString(j);
-                            spaceCounter = 0;
-                        } else {
-                            finalInFEN += Character.toString(j);
-                        }
-                    }
-                }
-                finalInFEN += (spaceCounter > 0) ? spaceCounter + "/" : "/";
-                spaceCounter = 0;
-            }
-            System.out.println(finalInFEN);*/
-            }
-            //Debug 4
-            /*for (char[] a : board) {
-                System.out.println();
-                for (char b : a) {
-                    System.out.print(b + " ");
-                }
-            }
-            System.out.println("\n----------------");*/
-            //Debug End
-        }
-        finalInFEN = "";
-        for (char[] i : board) {
-            for (char j : i) {
-                if (j == ' ') {
-                    spaceCounter++;
-                } else {
-                    if (spaceCounter > 0) {
-                        finalInFEN += spaceCounter + Character.toString(j);
-                        spaceCounter = 0;
-                    } else {
-                        finalInFEN += Character.toString(j);
-                    }
-                }
-            }
-            finalInFEN += (spaceCounter > 0) ? spaceCounter + "/" : "/";
-            spaceCounter = 0;
-        }
-        finalInFEN = finalInFEN.substring(0, (finalInFEN.length() - 1));
-        return finalInFEN;
+        return REPLAYER.get().finalPosition(game);
     }
     /**
      *Decide if the move is a special case
@@ -163,90 +76,7 @@ public class PgnReader {
      *Handle special moves
      */
     public static void doSpecialMove(String move, int turn) {
-        char piece = ' ';
-        if (move.equals("O-O-O")) {
-            if (turn % 2 == 0) {
-                board[7][2] = 'K';
-                board[7][3] = 'R';
-                board[7][0] = ' ';
-                board[7][4] = ' ';
-            } else {
-                board[0][2] = 'k';
-                board[0][3] = 'r';
-                board[0][0] = ' ';
-                board[0][4] = ' ';
-            }
-        } else if (move.equals("O-O")) {
-            if (turn % 2 == 0) {
-                board[7][6] = 'K';
-                board[7][5] = 'R';
-                board[7][7] = ' ';
-                board[7][4] = ' ';
-            } else {
-                board[0][6] = 'k';
-                board[0][5] = 'r';
-                board[0][7] = ' ';
-                board[0][4] = ' ';
-            }
-        } else if (move.contains("=")) {
-            int[] coordsOfMove;
-            int[][] coordsOfPieces;
-            int[] coordsOfPiece;
-            int endIndex = move.indexOf("=");
-            char newPiece = move.charAt(endIndex + 1);
-            newPiece = (turn % 2 == 0) ? newPiece
-                : Character.toLowerCase(newPiece);
-            move = move.substring(0, endIndex);
-            if (isSpecialMove(move)) {
-                doSpecialMove(move, turn);
-            } else {
-                piece = decidePiece(move, turn);
-                coordsOfMove = moveCoords(move);
-                coordsOfPieces = findPieces(piece);
-                coordsOfPiece = choosePiece(piece, coordsOfPieces,
-                                                 coordsOfMove, move, turn);
-                board[coordsOfMove[0]][coordsOfMove[1]] = newPiece;
-                board[coordsOfPiece[0]][coordsOfPiece[1]] = ' ';
-            }
-        } else if (move.equals("O-O")) {
-            if (turn % 2 == 0) {
-                board[7][6] = 'K';
-                board[7][5] = 'R';
-                board[7][7] = ' ';
-                board[7][4] = ' ';
-            } else {
-                board[0][6] = 'k';
-                board[0][5] = 'r';
-                board[0][7] = ' ';
-                board[0][4] = ' ';
-            }
-        } else if (move.length() >= 4)/*Handle rank ambiguities*/ {
-            if (move.charAt(1) >= 'a'  && move.charAt(0) <= 'h') {
-                piece = decidePiece(move, turn);
-                int[] coordsOfMove = moveCoords(move);
-                int[][] coordsOfPieces = findPieces(piece);
-                char rank = move.charAt(1);
-                rank -= 'a';
-                for (int i = 0; i < coordsOfPieces.length; i++) {
-                    if (coordsOfPieces[i][1] == rank) {
-                        board[coordsOfMove[0]][coordsOfMove[1]] = piece;
-                        board[coordsOfPieces[i][0]][rank] = ' ';
-                    }
-                }
-            } else {
-                piece = decidePiece(move, turn);
-                int[] coordsOfMove = moveCoords(move);
-                int[][] coordsOfPieces = findPieces(piece);
-                char file = move.charAt(1);
-                file -= '1';
-                for (int i = 0; i < coordsOfPieces.length; i++) {
-                    if (coordsOfPieces[i][0] == file) {
-                        board[coordsOfMove[0]][coordsOfMove[1]] = piece;
-                        board[coordsOfPieces[i][0]][coordsOfPieces[i][1]] = ' ';
-                    }
-                }
-            }
-        }
+        REPLAYER.get().doSpecialMove(move, turn);
     }
     /**
      *Find the coordinates of the one piece that
@@ -261,52 +91,8 @@ public class PgnReader {
     public static int[] choosePiece(char piece, int[][] coords,
                                     int[] moveCoords, String move,
                                     int moveNum) {
-        int[] coordsOfAble = {6, 4};
-        if (piece == 'P' || piece == 'p') {
-            for (int[] i : coords) {
-                coordsOfAble = (canPawnMove(i[0], i[1], moveCoords[0],
-                                            moveCoords[1],
-                                            moveNum,
-                                            move.contains("x"))) ? i
-                    : coordsOfAble;
-            }
-        } else if (piece == 'N' || piece == 'n') {
-            for (int[] i : coords) {
-                coordsOfAble = (canKnightMove(i[0], i[1],
-                                              moveCoords[0],
-                                              moveCoords[1])) ? i
-                    : coordsOfAble;
-            }
-        } else if (piece == 'B' || piece == 'b') {
-            for (int[] i : coords) {
-                coordsOfAble = (canBishopMove(i[0], i[1],
-                                              moveCoords[0],
-                                              moveCoords[1])) ? i
-                    : coordsOfAble;
-            }
-        } else if (piece == 'R' || piece == 'r') {
-            for (int[] i : coords) {
-                coordsOfAble = (canRookMove(i[0], i[1],
-                                            moveCoords[0],
-                                            moveCoords[1])) ? i
-                    : coordsOfAble;
-            }
-        } else if (piece == 'Q' || piece == 'q') {
-            for (int[] i : coords) {
-                coordsOfAble = (canQueenMove(i[0], i[1],
-                                             moveCoords[0],
-                                             moveCoords[1])) ? i
-                    :  coordsOfAble;
-            }
-        } else if (piece == 'K' || piece == 'k') {
-            for (int[] i : coords) {
-                coordsOfAble = (canKingMove(i[0], i[1],
-                                            moveCoords[0],
-                                            moveCoords[1])) ? i
-                    :  coordsOfAble;
-            }
-        }
-        return coordsOfAble;
+        return REPLAYER.get().choosePiece(piece, coords, moveCoords, move,
+                                          moveNum);
     }
     /**
      *Parse the coordinates of the move to be made
@@ -331,23 +117,7 @@ public class PgnReader {
      *return the coordinates of the pieces
      */
     public static int[][] findPieces(char piece) {
-        int[][] coordinates = new int[8][2];
-        int coordCounter = 0;
-        for (int i = 0; i < 8; i++) {
-            for (int j = 0; j < 8; j++) {
-                if (board[i][j] == piece) {
-                    coordinates[coordCounter][0] = i;
-                    coordinates[coordCounter][1] = j;
-                    coordCounter++;
-                }
-            }
-        }
-        int[][] tempCoordinates = coordinates;
-        coordinates = new int[coordCounter][2];
-        for (int i = 0; i < coordCounter; i++) {
-            coordinates[i] = tempCoordinates[i];
-        }
-        return coordinates;
+        return REPLAYER.get().findPieces(piece);
     }
     /**
      *Decide which piece is being moved
@@ -408,49 +178,14 @@ public class PgnReader {
      *each spot is a separate move
      */
     public static String[] separateMoves(String game) {
-        String listOfMoves;
-        int startIndex = 0;
-        int endIndex = 0;
-        int numOfMoves;
-        String tempMove;
-        game = game.replace("\n", " ");
-        startIndex = game.lastIndexOf(']');
-        startIndex++;
-        endIndex = game.length();
-        listOfMoves = game.substring(startIndex, endIndex);
-        listOfMoves = listOfMoves.trim();
-        //listOfMoves now contains only the numbered list of moves
-        endIndex = listOfMoves.lastIndexOf('.');
-        startIndex = endIndex - 2;
-        numOfMoves = Integer.parseInt(listOfMoves.substring(startIndex,
-                                                            endIndex).trim());
-        //numOfMoves reads the number of the last move in the file;
-        //How many move sets there are
-        String[] moves = new String[numOfMoves * 2];
-        String[] tempMoves;
-        startIndex = 0;
-        endIndex = 0;
-        for (int i = 0; i < moves.length; i += 2) {
-            startIndex = listOfMoves.indexOf('.', startIndex) + 1;
-            startIndex = (startIndex < 0) ? listOfMoves.length() : startIndex;
-            endIndex = listOfMoves.indexOf('.', startIndex) - 1;
-            endIndex = (endIndex < 0) ? listOfMoves.length() : endIndex;
-            tempMove = listOfMoves.substring(startIndex, endIndex);
-            tempMove = tempMove.trim();
-            if (tempMove.contains(" ")) {
-                moves[i] = tempMove.split(" ")[0];
-                moves[i + 1] = tempMove.split(" ")[1];
-            } else {
-                moves[i] = tempMove;
-            }
-        }
-        tempMoves = new String[moves.length - 1];
-        if (moves[moves.length - 1] == null) {
-            for (int a = 0; a < tempMoves.length; a++) {
-                tempMoves[a] = moves[a];
-            }
-            moves = new String[tempMoves.length];
-            moves = tempMoves;
+        char[] text = game.toCharArray();
+        int start = PgnHeaders.parse(game).movetextStart();
+        MoveTokenizer tokenizer = new MoveTokenizer();
+        int numOfMoves = tokenizer.tokenize(text, start, text.length);
+        String[] moves = new String[numOfMoves];
+        for (int i = 0; i < numOfMoves; i++) {
+            moves[i] = new String(text, tokenizer.start(i),
+                                  tokenizer.end(i) - tokenizer.start(i));
         }
         //each cell of moves is now filled with a single move and is
         //ordered sequentially
@@ -463,24 +198,7 @@ public class PgnReader {
      */
     public static boolean canPawnMove(int r, int c, int mr, int mc,
                                       int t, boolean a) {
-        int multiplier = (t % 2 == 0) ? 1 : -1;
-        boolean canMove = false;
-        if (a) {
-            canMove = ((r - mr) * multiplier == 1) ? true : canMove;
-            canMove = (Math.abs(c - mc) == 1) ? canMove : false;
-            if (board[mr][mc] == ' ' && canMove) {
-                if (t % 2 == 0) {
-                    board[mr + 1][mc] = ' ';
-                } else {
-                    board[mr - 1][mc] = ' ';
-                }
-            }
-        } else {
-            canMove = ((r - mr) * multiplier == 2) ? true : canMove;
-            canMove = ((r - mr) * multiplier == 1) ? true : canMove;
-            canMove = (c == mc) ? canMove : false;
-        }
-        return canMove;
+        return REPLAYER.get().canPawnMove(r, c, mr, mc, t, a);
     }
 
     /**
@@ -504,10 +222,7 @@ public class PgnReader {
      *mr is move row, mc is move column
      */
     public static boolean canQueenMove(int r, int c, int mr, int mc) {
-        boolean canMove = false;
-        canMove = (canBishopMove(r, c, mr, mc));
-        canMove = (canRookMove(r, c, mr, mc)) ? true : canMove;
-        return canMove;
+        return REPLAYER.get().canQueenMove(r, c, mr, mc);
     }
 
     /**
@@ -532,50 +247,7 @@ public class PgnReader {
      *mr is move row, mc is move column
      */
     public static boolean canRookMove(int r, int c, int mr, int mc) {
-        boolean canMove = false;
-        char[] rowArray;
-        char[] colArray;
-        if (r == mr) {
-            if (Math.abs(c - mc) == 1) {
-                return true;
-            }
-            if (c > mc) {
-                colArray = Arrays.copyOfRange(board[r], mc + 1, c);
-            } else {
-                colArray = Arrays.copyOfRange(board[r], c + 1, mc);
-            }
-            canMove = true;
-            for (char i : colArray) {
-                if (i != ' ') {
-                    canMove = false;
-                }
-            }
-        }
-        if (c == mc) {
-            if (Math.abs(r - mr) == 1) {
-                return true;
-            }
-            if (r > mr) {
-                rowArray = new char[r - mr - 1];
-                int counter = 0;
-                for (int i = mr + 1; i < r; i++) {
-                    rowArray[counter++] = board[i][c];
-                }
-            } else {
-                rowArray = new char[mr - r - 1];
-                int counter = 0;
-                for (int i = r + 1; i < mr; i++) {
-                    rowArray[counter++] = board[i][c];
-                }
-            }
-            canMove = true;
-            for (char i : rowArray) {
-                if (i != ' ') {
-                    canMove = false;
-                }
-            }
-        }
-        return canMove;
+        return REPLAYER.get().canRookMove(r, c, mr, mc);
     }
 
     /**
@@ -594,37 +266,67 @@ public class PgnReader {
     }
     /**
      * Reads the file named by path and returns its content as a String.
+     * Files ending in .gz or .zip are decompressed as they are read.
      *
      * @param path the relative or abolute path of the file to read
      * @return a String containing the content of the file
+     * @throws UncheckedIOException if the file cannot be read
      */
     public static String fileContent(String path) {
         Path file = Paths.get(path);
         StringBuilder sb = new StringBuilder();
-        try (BufferedReader reader = Files.newBufferedReader(file)) {
+        String name = path.toLowerCase(Locale.ROOT);
+        boolean compressed = name.endsWith(".gz") || name.endsWith(".zip");
+        try (BufferedReader reader = compressed
+             ? new BufferedReader(new InputStreamReader(
+                 PgnStreamReader.decompress(file), StandardCharsets.UTF_8))
+             : Files.newBufferedReader(file)) {
             String line = null;
             while ((line = reader.readLine()) != null) {
                 // Add the \n that's removed by readline()
                 sb.append(line + "\n");
             }
         } catch (IOException e) {
-            System.err.format("IOException: %s%n", e);
-            System.exit(1);
+            throw new UncheckedIOException(e);
         }
         return sb.toString();
     }
 
     public static void main(String[] args) {
-        String game = fileContent(args[0]);
-        System.out.format("Event: %s%n", tagValue("Event", game));
-        System.out.format("Site: %s%n", tagValue("Site", game));
-        System.out.format("Date: %s%n", tagValue("Date", game));
-        System.out.format("Round: %s%n", tagValue("Round", game));
-        System.out.format("White: %s%n", tagValue("White", game));
-        System.out.format("Black: %s%n", tagValue("Black", game));
-        System.out.format("Result: %s%n", tagValue("Result", game));
-        System.out.println("Final Position:");
-        System.out.println(finalPosition(game));
+        PrintWriter out = new PrintWriter(new BufferedWriter(
+            new OutputStreamWriter(System.out, StandardCharsets.UTF_8)));
+        int threads = Runtime.getRuntime().availableProcessors();
+        try {
+            TagQuery query = (args.length > 1) ? TagQuery.parse(args[1])
+                : null;
+            new PgnPipeline(threads, 1024).run(Paths.get(args[0]), query,
+                                               PgnReader::describe, out);
+        } catch (IOException e) {
+            System.err.format("IOException: %s%n", e);
+            System.exit(1);
+        } catch (InterruptedException e) {
+            System.exit(1);
+        } finally {
+            out.flush();
+        }
+    }
 
+    /**
+     *Describe the tags and final position of a single game the way
+     *main prints them
+     *@param game a `String` containing a PGN-formatted chess game
+     *@return the lines to print for the game
+     */
+    public static String describe(String game) {
+        PgnHeaders tags = PgnHeaders.parse(game);
+        StringBuilder sb = new StringBuilder(256);
+        for (String name : new String[] {"Event", "Site", "Date", "Round",
+                                         "White", "Black", "Result"}) {
+            sb.append(name).append(": ").append(tags.get(name, "NOT GIVEN"))
+                .append('\n');
+        }
+        sb.append("Final Position:\n");
+        sb.append(finalPosition(game)).append('\n');
+        return sb.toString();
     }
 }
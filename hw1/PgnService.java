@@ -0,0 +1,194 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ *A long running HTTP service that converts PGN to FEN, so callers pay
+ *for JVM startup and warm-up once instead of once per file. POST one or
+ *more PGN games to /fen and get back a JSON array holding, for each
+ *game, its tag pairs and the full FEN of its final position. Every
+ *request is replayed on its own GameReplayer, so any number can run at
+ *once. Requests run on virtual threads when the JVM has them and on a
+ *cached thread pool otherwise. The server only listens on localhost.
+ *Usage: java PgnService [port]
+ *@author Jordan Goldstein
+ *@version 1.0.0
+ */
+public class PgnService {
+    private static final int DEFAULT_PORT = 8080;
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+
+    /**
+     *Creates a service listening on localhost
+     *@param port the port to listen on, or 0 for any free port
+     *@throws IOException if the port cannot be bound
+     */
+    public PgnService(int port) throws IOException {
+        server = HttpServer.create(new InetSocketAddress(
+            InetAddress.getLoopbackAddress(), port), 0);
+        executor = newExecutor();
+        server.setExecutor(executor);
+        server.createContext("/fen", this::handle);
+    }
+
+    /**
+     *@return the port the service is listening on
+     */
+    public int port() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     *Start answering requests
+     */
+    public void start() {
+        server.start();
+    }
+
+    /**
+     *Stop the service, giving running requests up to a second to finish
+     */
+    public void stop() {
+        server.stop(1);
+        executor.shutdown();
+    }
+
+    /**
+     *Convert the games in a request body, split into games the same
+     *way files are read
+     *@param body the PGN text of one or more games, in UTF-8
+     *@return a JSON array with one object per game
+     */
+    public static String convert(byte[] body) {
+        GameReplayer replayer = new GameReplayer();
+        StringBuilder json = new StringBuilder(body.length / 2 + 64);
+        json.append('[');
+        PgnStreamReader reader = new PgnStreamReader(
+            new ByteArrayInputStream(body));
+        while (reader.hasNext()) {
+            if (json.length() > 1) {
+                json.append(',');
+            }
+            appendGame(replayer, reader.next(), json);
+        }
+        return json.append("]\n").toString();
+    }
+
+    /**
+     *Append the JSON object for one game
+     */
+    private static void appendGame(GameReplayer replayer, String game,
+                                   StringBuilder json) {
+        String fen = null;
+        String error = null;
+        try {
+            replayer.replay(game);
+            fen = replayer.fen();
+        } catch (RuntimeException e) {
+            error = (e.getMessage() != null) ? e.getMessage() : e.toString();
+        }
+        //replay() parses the tags before it can fail on a move
+        PgnHeaders headers = replayer.headers();
+        json.append("{\"tags\":{");
+        for (int i = 0; i < headers.size(); i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            appendString(headers.name(i), json);
+            json.append(':');
+            appendString(headers.value(i), json);
+        }
+        json.append('}');
+        if (error == null) {
+            json.append(",\"fen\":");
+            appendString(fen, json);
+        } else {
+            json.append(",\"error\":");
+            appendString(error, json);
+        }
+        json.append('}');
+    }
+
+    /**
+     *Append s to json as a quoted, escaped JSON string
+     */
+    private static void appendString(String s, StringBuilder json) {
+        json.append('"');
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '"' || c == '\\') {
+                json.append('\\').append(c);
+            } else if (c < ' ') {
+                json.append(String.format("\\u%04x", (int) c));
+            } else {
+                json.append(c);
+            }
+        }
+        json.append('"');
+    }
+
+    /**
+     *Answer one request to /fen
+     */
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            if (!exchange.getRequestMethod().equals("POST")) {
+                exchange.getResponseHeaders().set("Allow", "POST");
+                respond(exchange, 405, "{\"error\":\"use POST\"}\n");
+                return;
+            }
+            byte[] body;
+            try (InputStream in = exchange.getRequestBody()) {
+                body = in.readAllBytes();
+            }
+            respond(exchange, 200, convert(body));
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private static void respond(HttpExchange exchange, int status,
+                                String json) throws IOException {
+        byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type",
+                                          "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    /**
+     *A virtual thread per request if this JVM supports them, otherwise
+     *a cached pool of platform threads. Looked up reflectively so the
+     *service still builds and runs on JDKs without virtual threads.
+     */
+    private static ExecutorService newExecutor() {
+        try {
+            return (ExecutorService) Executors.class
+                .getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool();
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        int port = (args.length > 0) ? Integer.parseInt(args[0])
+            : DEFAULT_PORT;
+        PgnService service = new PgnService(port);
+        PgnMetrics.install();
+        service.start();
+        System.err.format("Listening on http://localhost:%d/fen%n",
+                          service.port());
+    }
+}
@@ -0,0 +1,72 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.function.Predicate;
+
+/**
+ *A sequence of PGN games read one at a time from a file, plain or
+ *compressed. Use open() to pick the right reader for a file.
+ *@author Jordan Goldstein
+ *@version 1.0.0
+ */
+public interface PgnSource extends Iterator<String>, Closeable {
+    /**
+     *@return the byte offset of the last game returned, counted in
+     *the uncompressed text
+     */
+    long offset();
+
+    /**
+     *Parse the tag pairs of the next game into headers, passing over
+     *its movetext
+     *@param headers where to put the tag pairs, cleared first
+     *@return false, leaving headers untouched, if no games are left
+     */
+    default boolean nextHeaders(PgnHeaders headers) {
+        if (!hasNext()) {
+            return false;
+        }
+        String game = next();
+        headers.read(game, 0, game.length());
+        return true;
+    }
+
+    /**
+     *Skip ahead to the next game whose tag pairs pass filter. Readers
+     *that can find the tag section on its own check filter before the
+     *movetext is decoded at all.
+     *@param filter the games to return, such as a TagQuery
+     *@param headers where to put the tag pairs of the game returned
+     *@return the PGN text of the next game to pass, or null if none of
+     *the games left do
+     */
+    default String nextMatching(Predicate<PgnHeaders> filter,
+                                PgnHeaders headers) {
+        while (hasNext()) {
+            String game = next();
+            headers.read(game, 0, game.length());
+            if (filter.test(headers)) {
+                return game;
+            }
+        }
+        return null;
+    }
+
+    /**
+     *Open a PGN file for reading. Files ending in .gz or .zip are
+     *decompressed as they are read, without a temporary file; any
+     *other file is memory mapped.
+     *@param file the file to read
+     *@return a source of the games in the file
+     *@throws IOException if the file cannot be opened
+     */
+    static PgnSource open(Path file) throws IOException {
+        String name = file.getFileName().toString().toLowerCase(Locale.ROOT);
+        if (name.endsWith(".gz") || name.endsWith(".zip")) {
+            return new PgnStreamReader(PgnStreamReader.decompress(file));
+        }
+        return new PgnFileReader(file);
+    }
+}
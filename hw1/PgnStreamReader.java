@@ -0,0 +1,220 @@
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.NoSuchElementException;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ *Splits the games out of a PGN byte stream, such as a file being
+ *decompressed on the fly. Game boundaries are found the same way as
+ *in PgnFileReader, with PgnBoundary, but the bytes come through a
+ *reusable buffer that only ever holds the game being handed out and
+ *what has been read past it.
+ *@author Jordan Goldstein
+ *@version 1.0.0
+ */
+public class PgnStreamReader implements PgnSource {
+    private final InputStream in;
+    private byte[] buffer = new byte[1 << 16];
+    private ByteBuffer view = ByteBuffer.wrap(buffer);
+    private int pos;
+    private int limit;
+    private long base;
+    private boolean eof;
+    private long offset = -1;
+
+    /**
+     *Creates a reader over a stream of PGN text
+     *@param in the stream to read, closed by close()
+     */
+    public PgnStreamReader(InputStream in) {
+        this.in = in;
+    }
+
+    /**
+     *Open a compressed PGN file as a stream of its PGN text. A .zip
+     *file yields every .pgn entry in it, one after another. A .gz file
+     *written by bgzip has its blocks inflated in parallel; any other
+     *.gz file, including one made by concatenating gzip files, is
+     *inflated as it is read.
+     *@param file a .gz or .zip file
+     *@return the decompressed PGN text
+     *@throws IOException if the file cannot be opened
+     */
+    public static InputStream decompress(Path file) throws IOException {
+        String name = file.getFileName().toString().toLowerCase(Locale.ROOT);
+        if (name.endsWith(".zip")) {
+            return new ZipEntries(new ZipInputStream(new BufferedInputStream(
+                Files.newInputStream(file), 1 << 16)));
+        }
+        if (ParallelGzipInputStream.isBlocked(file)) {
+            return new ParallelGzipInputStream(file,
+                Runtime.getRuntime().availableProcessors());
+        }
+        return new GZIPInputStream(Files.newInputStream(file), 1 << 16);
+    }
+
+    /**
+     *@return true if there is another game left in the stream
+     */
+    public boolean hasNext() {
+        try {
+            while (true) {
+                while (pos < limit && isBlank(buffer[pos])) {
+                    pos++;
+                }
+                if (pos < limit || eof) {
+                    return pos < limit;
+                }
+                fill();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     *Returns the PGN text of the next game in the stream
+     *@return the next game
+     */
+    public String next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        try {
+            int i = pos + 1;
+            int end = -1;
+            while (end < 0) {
+                if (i + 1 + PgnBoundary.LOOKAHEAD > limit && !eof) {
+                    i -= fill();
+                    continue;
+                }
+                if (i >= limit) {
+                    end = limit;
+                    break;
+                }
+                if (buffer[i] == '\n'
+                    && PgnBoundary.isEventTag(view, i + 1, limit)) {
+                    end = i + 1;
+                }
+                i++;
+            }
+            offset = base + pos;
+            String game = new String(buffer, pos, end - pos,
+                                     StandardCharsets.UTF_8);
+            pos = end;
+            return game;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     *@return the offset in the decompressed text of the last game
+     *returned
+     */
+    public long offset() {
+        return offset;
+    }
+
+    /**
+     *Closes the underlying stream
+     */
+    public void close() throws IOException {
+        in.close();
+    }
+
+    /**
+     *Move the unread bytes to the front of the buffer, growing it if
+     *it is full, and read more after them
+     *return how far the bytes moved
+     */
+    private int fill() throws IOException {
+        int shift = pos;
+        if (shift > 0) {
+            System.arraycopy(buffer, pos, buffer, 0, limit - pos);
+            limit -= pos;
+            base += pos;
+            pos = 0;
+        }
+        if (limit == buffer.length) {
+            byte[] grown = new byte[buffer.length * 2];
+            System.arraycopy(buffer, 0, grown, 0, limit);
+            buffer = grown;
+            view = ByteBuffer.wrap(buffer);
+        }
+        int n = in.read(buffer, limit, buffer.length - limit);
+        if (n < 0) {
+            eof = true;
+        } else {
+            limit += n;
+        }
+        return shift;
+    }
+
+    private static boolean isBlank(byte b) {
+        return b == ' ' || b == '\n' || b == '\r' || b == '\t';
+    }
+
+    /**
+     *The .pgn entries of a zip file as one stream, with a line break
+     *between entries so the last game of one never runs into the next
+     */
+    private static class ZipEntries extends InputStream {
+        private final ZipInputStream zip;
+        private boolean open;
+        private boolean separate;
+
+        ZipEntries(ZipInputStream zip) {
+            this.zip = zip;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] one = new byte[1];
+            return (read(one, 0, 1) < 0) ? -1 : one[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            while (true) {
+                if (separate) {
+                    separate = false;
+                    b[off] = '\n';
+                    return 1;
+                }
+                if (open) {
+                    int n = zip.read(b, off, len);
+                    if (n >= 0) {
+                        return n;
+                    }
+                    open = false;
+                    separate = true;
+                    continue;
+                }
+                ZipEntry entry = zip.getNextEntry();
+                if (entry == null) {
+                    return -1;
+                }
+                open = !entry.isDirectory() && entry.getName()
+                    .toLowerCase(Locale.ROOT).endsWith(".pgn");
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            zip.close();
+        }
+    }
+}
@@ -0,0 +1,488 @@
+/**
+ *A chess position stored as bitboards: one long per piece type and
+ *colour plus occupancy masks, with a square-indexed mailbox so the
+ *piece on a square can be read without scanning the bitboards.
+ *Squares are numbered 0 (a1) to 63 (h8), rank by rank.
+ *A Zobrist hash of the position is kept up to date on every change.
+ *Moves played with make() can be taken back one at a time with
+ *unmake(), which restores the position exactly.
+ *@author Jordan Goldstein
+ *@version 1.0.0
+ */
+public class Position {
+    public static final int WHITE = 0;
+    public static final int BLACK = 1;
+
+    public static final int PAWN = 0;
+    public static final int KNIGHT = 1;
+    public static final int BISHOP = 2;
+    public static final int ROOK = 3;
+    public static final int QUEEN = 4;
+    public static final int KING = 5;
+
+    /**Marks an empty square in the mailbox*/
+    public static final int EMPTY = -1;
+
+    /**FEN letters indexed by piece, where piece = colour * 6 + type*/
+    public static final String PIECE_CHARS = "PNBRQKpnbrqk";
+
+    /**Castling right bits, in FEN order*/
+    public static final int WHITE_KINGSIDE = 1;
+    public static final int WHITE_QUEENSIDE = 2;
+    public static final int BLACK_KINGSIDE = 4;
+    public static final int BLACK_QUEENSIDE = 8;
+
+    /**Marks that there is no en passant square*/
+    public static final int NO_SQUARE = -1;
+
+    //the castling rights that survive a move from or to each square
+    private static final int[] CASTLING_KEPT = new int[64];
+
+    static {
+        for (int sq = 0; sq < 64; sq++) {
+            CASTLING_KEPT[sq] = 15;
+        }
+        CASTLING_KEPT[0] &= ~WHITE_QUEENSIDE;
+        CASTLING_KEPT[4] &= ~(WHITE_KINGSIDE | WHITE_QUEENSIDE);
+        CASTLING_KEPT[7] &= ~WHITE_KINGSIDE;
+        CASTLING_KEPT[56] &= ~BLACK_QUEENSIDE;
+        CASTLING_KEPT[60] &= ~(BLACK_KINGSIDE | BLACK_QUEENSIDE);
+        CASTLING_KEPT[63] &= ~BLACK_KINGSIDE;
+    }
+
+    private final long[] pieces = new long[12];
+    private final long[] colors = new long[2];
+    private long occupied;
+    private final byte[] mailbox = new byte[64];
+    private int sideToMove;
+    private int castling;
+    private int epSquare;
+    private int halfmoveClock;
+    private int fullmoveNumber;
+    private long hash;
+    //two longs per move that can be unmade: the hash before the move,
+    //then the move with the captured piece and the state it changed
+    private long[] undo = new long[512];
+    private int plies;
+
+    /**
+     *Creates a position set up for the start of a game
+     */
+    public Position() {
+        reset();
+    }
+
+    /**
+     *Set up the initial position
+     */
+    public void reset() {
+        clear();
+        String back = "RNBQKBNR";
+        for (int file = 0; file < 8; file++) {
+            int type = PIECE_CHARS.indexOf(back.charAt(file));
+            put(piece(WHITE, type), square(file, 0));
+            put(piece(WHITE, PAWN), square(file, 1));
+            put(piece(BLACK, PAWN), square(file, 6));
+            put(piece(BLACK, type), square(file, 7));
+        }
+        castling = WHITE_KINGSIDE | WHITE_QUEENSIDE | BLACK_KINGSIDE
+            | BLACK_QUEENSIDE;
+        hash ^= Zobrist.castling(castling);
+    }
+
+    /**
+     *Remove every piece, give white the move and reset the
+     *castling rights, en passant square and move counters
+     */
+    public void clear() {
+        for (int i = 0; i < pieces.length; i++) {
+            pieces[i] = 0L;
+        }
+        colors[WHITE] = 0L;
+        colors[BLACK] = 0L;
+        occupied = 0L;
+        for (int i = 0; i < 64; i++) {
+            mailbox[i] = EMPTY;
+        }
+        sideToMove = WHITE;
+        castling = 0;
+        epSquare = NO_SQUARE;
+        halfmoveClock = 0;
+        fullmoveNumber = 1;
+        hash = 0L;
+        plies = 0;
+    }
+
+    /**
+     *Make this position a copy of other
+     *@param other the position to copy
+     */
+    public void copyFrom(Position other) {
+        System.arraycopy(other.pieces, 0, pieces, 0, pieces.length);
+        colors[WHITE] = other.colors[WHITE];
+        colors[BLACK] = other.colors[BLACK];
+        occupied = other.occupied;
+        System.arraycopy(other.mailbox, 0, mailbox, 0, 64);
+        sideToMove = other.sideToMove;
+        castling = other.castling;
+        epSquare = other.epSquare;
+        halfmoveClock = other.halfmoveClock;
+        fullmoveNumber = other.fullmoveNumber;
+        hash = other.hash;
+        plies = 0;
+    }
+
+    /**
+     *Place piece on an empty square
+     *@param piece the piece, colour * 6 + type
+     *@param sq the square to place it on
+     */
+    public void put(int piece, int sq) {
+        long bit = 1L << sq;
+        pieces[piece] |= bit;
+        colors[piece / 6] |= bit;
+        occupied |= bit;
+        mailbox[sq] = (byte) piece;
+        hash ^= Zobrist.piece(piece, sq);
+    }
+
+    /**
+     *Take whatever piece is on sq off the board
+     *@param sq the square to clear
+     *@return the piece that was there, or EMPTY
+     */
+    public int remove(int sq) {
+        int piece = mailbox[sq];
+        if (piece != EMPTY) {
+            long bit = ~(1L << sq);
+            pieces[piece] &= bit;
+            colors[piece / 6] &= bit;
+            occupied &= bit;
+            mailbox[sq] = EMPTY;
+            hash ^= Zobrist.piece(piece, sq);
+        }
+        return piece;
+    }
+
+    /**
+     *Move the piece on from to to and pass the move to the other side.
+     *Captures, en passant, castling (a king moving two files) and
+     *promotion are all worked out from the board, and the castling
+     *rights, en passant square and move counters are kept up to date.
+     *@param from the square the piece starts on
+     *@param to the square the piece moves to
+     *@param promotion the type promoted to, or PAWN if there is none
+     */
+    public void move(int from, int to, int promotion) {
+        hash ^= Zobrist.castling(castling) ^ epKey();
+        int piece = remove(from);
+        int type = piece % 6;
+        int color = piece / 6;
+        int captured = remove(to);
+        if (type == PAWN && to == epSquare) {
+            remove((color == WHITE) ? to - 8 : to + 8);
+        }
+        put((promotion != PAWN) ? piece(color, promotion) : piece, to);
+        if (type == KING && (to - from == 2 || from - to == 2)) {
+            int rookFrom = (to > from) ? from + 3 : from - 4;
+            int rookTo = (to > from) ? from + 1 : from - 1;
+            put(remove(rookFrom), rookTo);
+        }
+        castling &= CASTLING_KEPT[from] & CASTLING_KEPT[to];
+        epSquare = (type == PAWN && (to - from == 16 || from - to == 16))
+            ? (from + to) >> 1 : NO_SQUARE;
+        halfmoveClock = (type == PAWN || captured != EMPTY) ? 0
+            : halfmoveClock + 1;
+        if (color == BLACK) {
+            fullmoveNumber++;
+        }
+        sideToMove ^= 1;
+        hash ^= Zobrist.castling(castling) ^ epKey() ^ Zobrist.SIDE;
+    }
+
+    /**
+     *Play move and remember how to take it back with unmake(). The
+     *undo records live in a preallocated stack of longs, so making and
+     *unmaking moves allocates nothing and never copies the board.
+     *@param move the move, packed by Move.pack
+     */
+    public void make(int move) {
+        if (2 * plies + 2 > undo.length) {
+            long[] grown = new long[undo.length * 2];
+            System.arraycopy(undo, 0, grown, 0, undo.length);
+            undo = grown;
+        }
+        int to = Move.to(move);
+        undo[2 * plies] = hash;
+        undo[2 * plies + 1] = move | (long) (mailbox[to] + 1) << 16
+            | (long) castling << 20 | (long) (epSquare + 1) << 24
+            | (long) halfmoveClock << 32;
+        plies++;
+        move(Move.from(move), to, Move.promotion(move));
+    }
+
+    /**
+     *Take back the last move played with make(), restoring the board,
+     *castling rights, en passant square, move counters and hash
+     *@throws IllegalStateException if there is no move to take back
+     */
+    public void unmake() {
+        if (plies == 0) {
+            throw new IllegalStateException("No move to unmake");
+        }
+        plies--;
+        long record = undo[2 * plies + 1];
+        int move = (int) (record & 0xFFFF);
+        int captured = (int) (record >>> 16 & 0xF) - 1;
+        int from = Move.from(move);
+        int to = Move.to(move);
+        int color = sideToMove ^ 1;
+        int piece = remove(to);
+        if (Move.promotion(move) != PAWN) {
+            piece = piece(color, PAWN);
+        }
+        put(piece, from);
+        if (captured != EMPTY) {
+            put(captured, to);
+        }
+        epSquare = (int) (record >>> 24 & 0x7F) - 1;
+        if (piece % 6 == PAWN && to == epSquare) {
+            put(piece(color ^ 1, PAWN), (color == WHITE) ? to - 8 : to + 8);
+        }
+        if (piece % 6 == KING && (to - from == 2 || from - to == 2)) {
+            int rookFrom = (to > from) ? from + 3 : from - 4;
+            int rookTo = (to > from) ? from + 1 : from - 1;
+            put(remove(rookTo), rookFrom);
+        }
+        castling = (int) (record >>> 20 & 0xF);
+        halfmoveClock = (int) (record >>> 32);
+        if (color == BLACK) {
+            fullmoveNumber--;
+        }
+        sideToMove = color;
+        hash = undo[2 * plies];
+    }
+
+    /**
+     *@return the number of moves that unmake() can take back
+     */
+    public int plies() {
+        return plies;
+    }
+
+    /**
+     *@return the last move played with make() and not yet unmade,
+     *packed by Move.pack, or -1 if there is none
+     */
+    public int lastMove() {
+        return (plies == 0) ? -1 : (int) (undo[2 * plies - 1] & 0xFFFF);
+    }
+
+    /**
+     *@param color WHITE or BLACK
+     *@param type the piece type
+     *@return the bitboard of those pieces
+     */
+    public long pieces(int color, int type) {
+        return pieces[color * 6 + type];
+    }
+
+    /**
+     *@param color WHITE or BLACK
+     *@return the bitboard of every piece of that colour
+     */
+    public long occupancy(int color) {
+        return colors[color];
+    }
+
+    /**
+     *@return the bitboard of every occupied square
+     */
+    public long occupied() {
+        return occupied;
+    }
+
+    /**
+     *@param sq a square
+     *@return the piece on sq, or EMPTY
+     */
+    public int pieceAt(int sq) {
+        return mailbox[sq];
+    }
+
+    /**
+     *@return WHITE or BLACK, whoever is to move
+     */
+    public int sideToMove() {
+        return sideToMove;
+    }
+
+    /**
+     *@param color the side to give the move to
+     */
+    public void setSideToMove(int color) {
+        hash ^= epKey();
+        if (color != sideToMove) {
+            hash ^= Zobrist.SIDE;
+        }
+        sideToMove = color;
+        hash ^= epKey();
+    }
+
+    /**
+     *@return the castling rights still available, as right bits
+     */
+    public int castlingRights() {
+        return castling;
+    }
+
+    /**
+     *@param rights the castling rights, as right bits
+     */
+    public void setCastlingRights(int rights) {
+        hash ^= Zobrist.castling(castling) ^ Zobrist.castling(rights);
+        castling = rights;
+    }
+
+    /**
+     *@return the square a pawn just skipped over, or NO_SQUARE
+     */
+    public int epSquare() {
+        return epSquare;
+    }
+
+    /**
+     *@param sq the en passant square, or NO_SQUARE
+     */
+    public void setEpSquare(int sq) {
+        hash ^= epKey();
+        epSquare = sq;
+        hash ^= epKey();
+    }
+
+    /**
+     *@return the number of half moves since the last capture or pawn move
+     */
+    public int halfmoveClock() {
+        return halfmoveClock;
+    }
+
+    /**
+     *@return the number of the current full move, starting at 1
+     */
+    public int fullmoveNumber() {
+        return fullmoveNumber;
+    }
+
+    /**
+     *@param halfmoves the half moves since the last capture or pawn move
+     *@param fullmoves the number of the current full move
+     */
+    public void setMoveCounters(int halfmoves, int fullmoves) {
+        halfmoveClock = halfmoves;
+        fullmoveNumber = fullmoves;
+    }
+
+    /**
+     *@return the Zobrist hash of this position
+     */
+    public long hash() {
+        return hash;
+    }
+
+    /**
+     *Work the Zobrist hash out from scratch rather than incrementally
+     *@return what hash() should be returning
+     */
+    public long computeHash() {
+        long h = Zobrist.castling(castling) ^ epKey();
+        for (int sq = 0; sq < 64; sq++) {
+            if (mailbox[sq] != EMPTY) {
+                h ^= Zobrist.piece(mailbox[sq], sq);
+            }
+        }
+        return (sideToMove == BLACK) ? h ^ Zobrist.SIDE : h;
+    }
+
+    /**
+     *Return the en passant key, which only counts when the side to
+     *move has a pawn that could actually make the capture
+     */
+    private long epKey() {
+        if (epSquare == NO_SQUARE || (pieces[piece(sideToMove, PAWN)]
+            & Attacks.pawn(sideToMove ^ 1, epSquare)) == 0) {
+            return 0L;
+        }
+        return Zobrist.epFile(epSquare & 7);
+    }
+
+    /**
+     *@param sq a square
+     *@param by WHITE or BLACK
+     *@return true if any piece of colour by attacks sq
+     */
+    public boolean isAttacked(int sq, int by) {
+        int b = by * 6;
+        long queens = pieces[b + QUEEN];
+        return (Attacks.knight(sq) & pieces[b + KNIGHT]) != 0
+            || (Attacks.king(sq) & pieces[b + KING]) != 0
+            || (Attacks.pawn(by ^ 1, sq) & pieces[b + PAWN]) != 0
+            || (Attacks.rook(sq, occupied) & (pieces[b + ROOK] | queens)) != 0
+            || (Attacks.bishop(sq, occupied)
+                & (pieces[b + BISHOP] | queens)) != 0;
+    }
+
+    /**
+     *@return true if the side to move is in check
+     */
+    public boolean inCheck() {
+        return isAttacked(king(sideToMove), sideToMove ^ 1);
+    }
+
+    /**
+     *Check whether moving the piece on from to to would uncover an
+     *attack on the mover's king by an enemy slider, as a pinned piece
+     *leaving its line would
+     *@param from the square the piece starts on
+     *@param to the square the piece moves to
+     *@return true if the move would expose the king
+     */
+    public boolean exposesKing(int from, int to) {
+        int color = mailbox[from] / 6;
+        int them = color ^ 1;
+        int king = king(color);
+        long occ = (occupied & ~(1L << from)) | (1L << to);
+        long notCaptured = ~(1L << to);
+        long queens = pieces[them * 6 + QUEEN];
+        long rooks = (pieces[them * 6 + ROOK] | queens) & notCaptured;
+        long bishops = (pieces[them * 6 + BISHOP] | queens) & notCaptured;
+        return (Attacks.rook(king, occ) & rooks) != 0
+            || (Attacks.bishop(king, occ) & bishops) != 0;
+    }
+
+    /**
+     *@param color WHITE or BLACK
+     *@return the square the king stands on, or 64 if it has none
+     */
+    public int king(int color) {
+        return Long.numberOfTrailingZeros(pieces[color * 6 + KING]);
+    }
+
+    /**
+     *@param color WHITE or BLACK
+     *@param type the piece type
+     *@return the piece index used by the mailbox and PIECE_CHARS
+     */
+    public static int piece(int color, int type) {
+        return color * 6 + type;
+    }
+
+    /**
+     *@param file 0 for the a-file through 7 for the h-file
+     *@param rank 0 for the first rank through 7 for the eighth
+     *@return the square index
+     */
+    public static int square(int file, int rank) {
+        return rank * 8 + file;
+    }
+}
@@ -0,0 +1,128 @@
+import java.util.Arrays;
+
+/**
+ *A bounded cache of values keyed by 64-bit position hash.
+ *Entries live in flat arrays indexed by the low bits of the hash; a
+ *lookup probes a few neighbouring slots and a full neighbourhood
+ *evicts the entry in the home slot, so the cache never grows past
+ *the capacity it was created with. Not safe for concurrent use.
+ *@param <V> the type of value cached for each position
+ *@author Jordan Goldstein
+ *@version 1.0.0
+ */
+public class PositionCache<V> {
+    private static final int PROBES = 4;
+
+    private final long[] keys;
+    private final Object[] values;
+    private final int mask;
+    private int size;
+    private long evictions;
+
+    /**
+     *Creates a cache holding at most capacity entries
+     *@param capacity the maximum number of entries, rounded up to a
+     *power of two
+     */
+    public PositionCache(int capacity) {
+        int slots = Integer.highestOneBit(Math.max(capacity - 1, 1)) << 1;
+        keys = new long[slots];
+        values = new Object[slots];
+        mask = slots - 1;
+    }
+
+    /**
+     *@param hash the hash of a position
+     *@return the value cached for that position, or null
+     */
+    @SuppressWarnings("unchecked")
+    public V get(long hash) {
+        int home = index(hash);
+        for (int i = 0; i < PROBES; i++) {
+            int slot = (home + i) & mask;
+            if (values[slot] == null) {
+                return null;
+            }
+            if (keys[slot] == hash) {
+                return (V) values[slot];
+            }
+        }
+        return null;
+    }
+
+    /**
+     *Cache value for the position with the given hash, replacing any
+     *value already there
+     *@param hash the hash of a position
+     *@param value the value to cache, not null
+     */
+    public void put(long hash, V value) {
+        values[findSlot(hash)] = value;
+    }
+
+    /**
+     *Cache value unless the position is already cached
+     *@param hash the hash of a position
+     *@param value the value to cache, not null
+     *@return the value already cached, or null if value was stored
+     */
+    @SuppressWarnings("unchecked")
+    public V putIfAbsent(long hash, V value) {
+        int slot = findSlot(hash);
+        if (values[slot] != null) {
+            return (V) values[slot];
+        }
+        values[slot] = value;
+        return null;
+    }
+
+    /**
+     *@return the number of entries cached
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     *@return how many entries have been pushed out to make room
+     */
+    public long evictions() {
+        return evictions;
+    }
+
+    /**
+     *Remove every entry
+     */
+    public void clear() {
+        Arrays.fill(values, null);
+        size = 0;
+    }
+
+    /**
+     *Find the slot holding hash, claiming an empty or evicted one
+     *for it if it is not cached. The claimed slot's value is left
+     *null for the caller to fill.
+     */
+    private int findSlot(long hash) {
+        int home = index(hash);
+        for (int i = 0; i < PROBES; i++) {
+            int slot = (home + i) & mask;
+            if (values[slot] == null) {
+                keys[slot] = hash;
+                size++;
+                return slot;
+            }
+            if (keys[slot] == hash) {
+                return slot;
+            }
+        }
+        keys[home] = hash;
+        values[home] = null;
+        evictions++;
+        return home;
+    }
+
+    private int index(long hash) {
+        return (int) (hash ^ (hash >>> 32)) & mask;
+    }
+}
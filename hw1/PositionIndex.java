@@ -0,0 +1,376 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ *An on-disk index from position hash to the games that reached it.
+ *The file is a 16 byte header (magic and entry count) followed by
+ *16 byte entries of (Zobrist hash, game byte offset << 16 | ply)
+ *sorted by hash, so a lookup is a binary search over the memory
+ *mapped file and never re-parses any PGN.
+ *Usage: java PositionIndex build games.pgn games.idx
+ *       java PositionIndex find games.idx "e4 c5 Nf3"
+ *@author Jordan Goldstein
+ *@version 1.0.0
+ */
+public class PositionIndex implements Closeable {
+    private static final long MAGIC = 0x5047_4E49_4458_0001L;
+    private static final int HEADER = 16;
+    private static final int ENTRY = 16;
+    private static final int RUN_ENTRIES = 1 << 22;
+    private static final int SEGMENT_BITS = 26;
+    private static final long SEGMENT_MASK = (1L << SEGMENT_BITS) - 1;
+
+    private final FileChannel channel;
+    private final MappedByteBuffer[] segments;
+    private final long count;
+
+    /**
+     *Opens an index file built by build()
+     *@param file the index file
+     *@throws IOException if the file cannot be read or is not an index
+     */
+    public PositionIndex(Path file) throws IOException {
+        channel = FileChannel.open(file, StandardOpenOption.READ);
+        MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY,
+                                              0, HEADER);
+        if (header.getLong(0) != MAGIC) {
+            channel.close();
+            throw new IOException(file + " is not a position index");
+        }
+        count = header.getLong(8);
+        int n = (int) ((count + SEGMENT_MASK) >>> SEGMENT_BITS);
+        segments = new MappedByteBuffer[n];
+        for (int i = 0; i < n; i++) {
+            long first = (long) i << SEGMENT_BITS;
+            long entries = Math.min(SEGMENT_MASK + 1, count - first);
+            segments[i] = channel.map(FileChannel.MapMode.READ_ONLY,
+                                      HEADER + first * ENTRY,
+                                      entries * ENTRY);
+        }
+    }
+
+    /**
+     *@return the number of entries in the index
+     */
+    public long size() {
+        return count;
+    }
+
+    /**
+     *Find every game that reached the position with the given hash
+     *@param hash the Zobrist hash of the position
+     *@return the matching entries, decoded with offset() and ply()
+     */
+    public long[] lookup(long hash) {
+        long lo = 0;
+        long hi = count;
+        while (lo < hi) {
+            long mid = (lo + hi) >>> 1;
+            if (hash(mid) < hash) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        long end = lo;
+        while (end < count && hash(end) == hash) {
+            end++;
+        }
+        long[] found = new long[(int) (end - lo)];
+        for (int i = 0; i < found.length; i++) {
+            found[i] = value(lo + i);
+        }
+        return found;
+    }
+
+    /**
+     *@param entry an entry returned by lookup()
+     *@return the byte offset of the game in the PGN file
+     */
+    public static long offset(long entry) {
+        return entry >>> 16;
+    }
+
+    /**
+     *@param entry an entry returned by lookup()
+     *@return the ply at which the game reached the position
+     */
+    public static int ply(long entry) {
+        return (int) (entry & 0xFFFF);
+    }
+
+    /**
+     *Releases the file handle
+     */
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private long hash(long i) {
+        return segments[(int) (i >>> SEGMENT_BITS)]
+            .getLong((int) (i & SEGMENT_MASK) * ENTRY);
+    }
+
+    private long value(long i) {
+        return segments[(int) (i >>> SEGMENT_BITS)]
+            .getLong((int) (i & SEGMENT_MASK) * ENTRY + 8);
+    }
+
+    /**
+     *Replay every game in pgn once and write the index of every
+     *position reached after the first move. Entries are gathered in
+     *sorted runs on disk and merged, so memory use does not depend on
+     *the size of the PGN file. Games that cannot be replayed are
+     *indexed up to the bad move and reported to System.err.
+     *@param pgn the PGN file to index
+     *@param index where to write the index
+     *@return the number of entries written
+     *@throws IOException if a file cannot be read or written
+     */
+    public static long build(Path pgn, Path index) throws IOException {
+        return build(pgn, index, ErrorSink.printingTo(System.err));
+    }
+
+    /**
+     *Replay every game in pgn once and write the index of every
+     *position reached after the first move, as build(pgn, index) does
+     *@param pgn the PGN file to index
+     *@param index where to write the index
+     *@param sink where to report the games that cannot be replayed,
+     *which are indexed up to the bad move
+     *@return the number of entries written
+     *@throws IOException if a file cannot be read or written
+     */
+    public static long build(Path pgn, Path index, ErrorSink sink)
+        throws IOException {
+        long[] hashes = new long[RUN_ENTRIES];
+        long[] values = new long[RUN_ENTRIES];
+        int filled = 0;
+        List<Path> runs = new ArrayList<>();
+        GameReplayer replayer = new GameReplayer();
+        try (PgnFileReader reader = new PgnFileReader(pgn)) {
+            while (reader.hasNext()) {
+                String game = reader.next();
+                long offset = reader.offset();
+                int ply = 0;
+                try {
+                    Iterator<Position> plies = replayer.plies(game);
+                    while (plies.hasNext() && ply < 0xFFFF) {
+                        hashes[filled] = plies.next().hash();
+                        values[filled] = offset << 16 | ++ply;
+                        if (++filled == RUN_ENTRIES) {
+                            runs.add(writeRun(index, hashes, values, filled));
+                            filled = 0;
+                        }
+                    }
+                } catch (RuntimeException e) {
+                    sink.error(pgn, offset, e.toString());
+                }
+            }
+            if (runs.isEmpty()) {
+                sort(hashes, values, 0, filled - 1);
+                try (DataOutputStream out = open(index)) {
+                    out.writeLong(MAGIC);
+                    out.writeLong(filled);
+                    for (int i = 0; i < filled; i++) {
+                        out.writeLong(hashes[i]);
+                        out.writeLong(values[i]);
+                    }
+                }
+                return filled;
+            }
+            if (filled > 0) {
+                runs.add(writeRun(index, hashes, values, filled));
+            }
+            return merge(runs, index);
+        } finally {
+            for (Path run : runs) {
+                Files.deleteIfExists(run);
+            }
+        }
+    }
+
+    /**
+     *One sorted run being merged, positioned on its smallest entry
+     */
+    private static class Run implements Comparable<Run> {
+        private final DataInputStream in;
+        private long hash;
+        private long value;
+
+        Run(Path file) throws IOException {
+            in = new DataInputStream(new BufferedInputStream(
+                Files.newInputStream(file), 1 << 16));
+        }
+
+        boolean advance() throws IOException {
+            try {
+                hash = in.readLong();
+                value = in.readLong();
+                return true;
+            } catch (EOFException e) {
+                in.close();
+                return false;
+            }
+        }
+
+        public int compareTo(Run other) {
+            int c = Long.compare(hash, other.hash);
+            return (c != 0) ? c : Long.compare(value, other.value);
+        }
+    }
+
+    /**
+     *Merge the sorted runs into the index file
+     */
+    private static long merge(List<Path> runs, Path index)
+        throws IOException {
+        long total = 0;
+        for (Path run : runs) {
+            total += Files.size(run) / ENTRY;
+        }
+        PriorityQueue<Run> queue = new PriorityQueue<>();
+        try (DataOutputStream out = open(index)) {
+            for (Path file : runs) {
+                Run run = new Run(file);
+                if (run.advance()) {
+                    queue.add(run);
+                }
+            }
+            out.writeLong(MAGIC);
+            out.writeLong(total);
+            while (!queue.isEmpty()) {
+                Run run = queue.poll();
+                out.writeLong(run.hash);
+                out.writeLong(run.value);
+                if (run.advance()) {
+                    queue.add(run);
+                }
+            }
+        } finally {
+            for (Run run : queue) {
+                run.in.close();
+            }
+        }
+        return total;
+    }
+
+    /**
+     *Sort the first n entries and write them to a temporary run file
+     */
+    private static Path writeRun(Path index, long[] hashes, long[] values,
+                                 int n) throws IOException {
+        sort(hashes, values, 0, n - 1);
+        Path parent = index.toAbsolutePath().getParent();
+        Path run = Files.createTempFile(parent, "run", ".tmp");
+        try (DataOutputStream out = open(run)) {
+            for (int i = 0; i < n; i++) {
+                out.writeLong(hashes[i]);
+                out.writeLong(values[i]);
+            }
+        }
+        return run;
+    }
+
+    private static DataOutputStream open(Path file) throws IOException {
+        return new DataOutputStream(new BufferedOutputStream(
+            Files.newOutputStream(file), 1 << 16));
+    }
+
+    /**
+     *Quicksort the entries in [lo, hi] by hash, then value, moving
+     *both arrays together
+     */
+    private static void sort(long[] hashes, long[] values, int lo, int hi) {
+        while (hi - lo > 16) {
+            int mid = (lo + hi) >>> 1;
+            long pivotHash = hashes[mid];
+            long pivotValue = values[mid];
+            int i = lo;
+            int j = hi;
+            while (i <= j) {
+                while (less(hashes[i], values[i], pivotHash, pivotValue)) {
+                    i++;
+                }
+                while (less(pivotHash, pivotValue, hashes[j], values[j])) {
+                    j--;
+                }
+                if (i <= j) {
+                    swap(hashes, values, i++, j--);
+                }
+            }
+            //recurse into the smaller half so the stack stays shallow
+            if (j - lo < hi - i) {
+                sort(hashes, values, lo, j);
+                lo = i;
+            } else {
+                sort(hashes, values, i, hi);
+                hi = j;
+            }
+        }
+        for (int i = lo + 1; i <= hi; i++) {
+            for (int j = i; j > lo && less(hashes[j], values[j],
+                                           hashes[j - 1], values[j - 1]);
+                 j--) {
+                swap(hashes, values, j, j - 1);
+            }
+        }
+    }
+
+    private static boolean less(long h1, long v1, long h2, long v2) {
+        return h1 < h2 || (h1 == h2 && v1 < v2);
+    }
+
+    private static void swap(long[] hashes, long[] values, int i, int j) {
+        long h = hashes[i];
+        hashes[i] = hashes[j];
+        hashes[j] = h;
+        long v = values[i];
+        values[i] = values[j];
+        values[j] = v;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length == 3 && args[0].equals("build")) {
+            long start = System.nanoTime();
+            long entries = build(Paths.get(args[1]), Paths.get(args[2]));
+            System.out.format("%d entries in %.2f s%n", entries,
+                              (System.nanoTime() - start) / 1e9);
+        } else if (args.length == 3 && args[0].equals("find")) {
+            GameReplayer replayer = new GameReplayer();
+            for (String move : args[2].trim().split("\\s+")) {
+                replayer.play(move);
+            }
+            try (PositionIndex index = new PositionIndex(Paths.get(args[1]))) {
+                long start = System.nanoTime();
+                long[] found = index.lookup(replayer.position().hash());
+                long elapsed = System.nanoTime() - start;
+                for (long entry : found) {
+                    System.out.format("offset %d ply %d%n", offset(entry),
+                                      ply(entry));
+                }
+                System.out.format("%d games in %.3f ms%n", found.length,
+                                  elapsed / 1e6);
+            }
+        } else {
+            System.err.println("Usage: java PositionIndex build games.pgn "
+                               + "games.idx | find games.idx \"e4 c5 Nf3\"");
+            System.exit(1);
+        }
+    }
+}
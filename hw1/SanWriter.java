@@ -0,0 +1,85 @@
+/**
+ *Writes moves in Standard Algebraic Notation (SAN), adding just
+ *enough of the origin square to tell apart pieces of the same type
+ *that could also legally reach the target square, and marking
+ *checks with '+' and checkmates with '#'.
+ *@see http://www.saremba.de/chessgml/standards/pgn/pgn-complete.htm#c8.2.3
+ *@author Jordan Goldstein
+ *@version 1.0.0
+ */
+public class SanWriter {
+    private static final long FILE_A = 0x0101010101010101L;
+    private static final String LETTERS = "PNBRQK";
+
+    private final Position scratch = new Position();
+    private final int[] replies = new int[MoveGenerator.MAX_MOVES];
+
+    /**
+     *Append the SAN of move, which must be legal in position
+     *@param position the position before the move
+     *@param move the move, packed by Move.pack
+     *@param out where to write the SAN
+     */
+    public void append(Position position, int move, StringBuilder out) {
+        int from = Move.from(move);
+        int to = Move.to(move);
+        int promotion = Move.promotion(move);
+        int piece = position.pieceAt(from);
+        int type = piece % 6;
+        int color = piece / 6;
+        if (type == Position.KING && (to - from == 2 || from - to == 2)) {
+            out.append((to > from) ? "O-O" : "O-O-O");
+        } else {
+            boolean capture = position.pieceAt(to) != Position.EMPTY
+                || (type == Position.PAWN && to == position.epSquare());
+            if (type == Position.PAWN) {
+                if (capture) {
+                    out.append((char) ('a' + (from & 7))).append('x');
+                }
+            } else {
+                out.append(LETTERS.charAt(type));
+                appendDisambiguation(position, type, color, from, to, out);
+                if (capture) {
+                    out.append('x');
+                }
+            }
+            FenWriter.appendSquare(to, out);
+            if (promotion != Position.PAWN) {
+                out.append('=').append(LETTERS.charAt(promotion));
+            }
+        }
+        scratch.copyFrom(position);
+        scratch.move(from, to, promotion);
+        if (scratch.inCheck()) {
+            out.append((MoveGenerator.generate(scratch, replies) == 0) ? '#'
+                       : '+');
+        }
+    }
+
+    /**
+     *Append the file, rank or both of from if another piece of the
+     *same type could also legally move to to
+     */
+    private static void appendDisambiguation(Position position, int type,
+                                             int color, int from, int to,
+                                             StringBuilder out) {
+        long others = position.pieces(color, type)
+            & Attacks.of(type, to, position.occupied()) & ~(1L << from);
+        for (long bits = others; bits != 0; bits &= bits - 1) {
+            int sq = Long.numberOfTrailingZeros(bits);
+            if (position.exposesKing(sq, to)) {
+                others &= ~(1L << sq);
+            }
+        }
+        if (others == 0) {
+            return;
+        }
+        if ((others & (FILE_A << (from & 7))) == 0) {
+            out.append((char) ('a' + (from & 7)));
+        } else if ((others & (0xFFL << (from & ~7))) == 0) {
+            out.append((char) ('1' + (from >> 3)));
+        } else {
+            FenWriter.appendSquare(from, out);
+        }
+    }
+}
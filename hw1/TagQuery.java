@@ -0,0 +1,319 @@
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.Locale;
+import java.util.function.Predicate;
+
+/**
+ *A filter on the tag pairs of a game, parsed from a query such as
+ *  WhiteElo >= 2600 and Result = "1-0" and Date in 2015..2020
+ *Comparisons are joined with and, or, not and parentheses; a leading
+ *where is allowed and ignored. A comparison is a tag name, one of
+ *= != < <= > >=, and a value, or a tag name, in, and a range lo..hi.
+ *Values are compared as dates if the tag name ends in Date, where a
+ *year or a year and month stands for every day in it; as numbers if
+ *the value is a whole number; and as strings otherwise. A game without
+ *the tag never passes a comparison on it.
+ *A query is meant to be handed to PgnSource.nextMatching(), which
+ *checks it as the tag pairs are scanned so that the movetext of a
+ *game that does not pass is never decoded, let alone replayed.
+ *Usage: java TagQuery games.pgn query
+ *@author Jordan Goldstein
+ *@version 1.0.0
+ */
+public class TagQuery implements Predicate<PgnHeaders> {
+    private static final int EQ = 0;
+    private static final int NE = 1;
+    private static final int LT = 2;
+    private static final int LE = 3;
+    private static final int GT = 4;
+    private static final int GE = 5;
+
+    private final String query;
+    private final Predicate<PgnHeaders> test;
+    private int pos;
+
+    private TagQuery(String query) {
+        this.query = query;
+        skipSpace();
+        if (keyword("where")) {
+            skipSpace();
+        }
+        test = or();
+        if (pos < query.length()) {
+            throw error("Unexpected text");
+        }
+    }
+
+    /**
+     *@param query a query such as "WhiteElo >= 2600 and Result = 1-0"
+     *@return the parsed query
+     *@throws IllegalArgumentException if query is malformed
+     */
+    public static TagQuery parse(String query) {
+        return new TagQuery(query);
+    }
+
+    /**
+     *@param headers the tag pairs of a game
+     *@return true if the game passes the query
+     */
+    public boolean test(PgnHeaders headers) {
+        return test.test(headers);
+    }
+
+    @Override
+    public String toString() {
+        return query;
+    }
+
+    private Predicate<PgnHeaders> or() {
+        Predicate<PgnHeaders> left = and();
+        while (keyword("or")) {
+            left = left.or(and());
+        }
+        return left;
+    }
+
+    private Predicate<PgnHeaders> and() {
+        Predicate<PgnHeaders> left = not();
+        while (keyword("and")) {
+            left = left.and(not());
+        }
+        return left;
+    }
+
+    private Predicate<PgnHeaders> not() {
+        if (keyword("not")) {
+            return not().negate();
+        }
+        if (symbol("(")) {
+            Predicate<PgnHeaders> inner = or();
+            if (!symbol(")")) {
+                throw error("Missing )");
+            }
+            return inner;
+        }
+        return comparison();
+    }
+
+    /**
+     *Parse one tag name, operator and value, or a tag name and range
+     */
+    private Predicate<PgnHeaders> comparison() {
+        String name = name();
+        if (keyword("in")) {
+            String lo = value();
+            if (!symbol("..")) {
+                throw error("Expected ..");
+            }
+            String hi = value();
+            return compare(name, GE, lo).and(compare(name, LE, hi));
+        }
+        //two character operators first, so <= is not read as <
+        int op;
+        if (symbol("<=")) {
+            op = LE;
+        } else if (symbol(">=")) {
+            op = GE;
+        } else if (symbol("!=")) {
+            op = NE;
+        } else if (symbol("==") || symbol("=")) {
+            op = EQ;
+        } else if (symbol("<")) {
+            op = LT;
+        } else if (symbol(">")) {
+            op = GT;
+        } else {
+            throw error("Expected a comparison");
+        }
+        return compare(name, op, value());
+    }
+
+    /**
+     *Build the test of tag name against value
+     */
+    private static Predicate<PgnHeaders> compare(String name, int op,
+                                                 String value) {
+        if (name.endsWith("Date")) {
+            int lo = TagStore.parseDate(padDate(value, "00"));
+            int hi = TagStore.parseDate(padDate(value, "99"));
+            if (lo == 0) {
+                throw new IllegalArgumentException("Not a date: " + value);
+            }
+            return headers -> {
+                int date = TagStore.parseDate(headers.get(name));
+                return date != 0 && holds(op, date, lo, hi);
+            };
+        }
+        if (isNumber(value)) {
+            long number = Long.parseLong(value);
+            return headers -> {
+                String tag = headers.get(name);
+                return tag != null && isNumber(tag)
+                    && holds(op, Long.parseLong(tag), number, number);
+            };
+        }
+        return headers -> {
+            String tag = headers.get(name);
+            return tag != null && holds(op, tag.compareTo(value), 0, 0);
+        };
+    }
+
+    /**
+     *Check whether x op [lo, hi] holds, where lo..hi is every value
+     *the literal stands for
+     */
+    private static boolean holds(int op, long x, long lo, long hi) {
+        switch (op) {
+        case EQ:
+            return x >= lo && x <= hi;
+        case NE:
+            return x < lo || x > hi;
+        case LT:
+            return x < lo;
+        case LE:
+            return x <= hi;
+        case GT:
+            return x > hi;
+        default:
+            return x >= lo;
+        }
+    }
+
+    /**
+     *Fill in the month and day missing from a date such as "2015" or
+     *"2015.03" with fill
+     */
+    private static String padDate(String value, String fill) {
+        String date = value.replace("??", fill);
+        if (date.length() == 4) {
+            date += "." + fill;
+        }
+        if (date.length() == 7) {
+            date += "." + fill;
+        }
+        return date;
+    }
+
+    private static boolean isNumber(String value) {
+        int start = value.startsWith("-") ? 1 : 0;
+        if (value.length() == start || value.length() > 18) {
+            return false;
+        }
+        for (int i = start; i < value.length(); i++) {
+            if (value.charAt(i) < '0' || value.charAt(i) > '9') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     *Parse a tag name
+     */
+    private String name() {
+        int start = pos;
+        while (pos < query.length()
+               && (Character.isLetterOrDigit(query.charAt(pos))
+                   || query.charAt(pos) == '_')) {
+            pos++;
+        }
+        if (pos == start) {
+            throw error("Expected a tag name");
+        }
+        String name = query.substring(start, pos);
+        skipSpace();
+        return name;
+    }
+
+    /**
+     *Parse a value: a quoted string, in which \" and \\ are escapes as
+     *in PGN, or a bare word such as 2600, 1-0 or 2015.03.21
+     */
+    private String value() {
+        StringBuilder sb = new StringBuilder();
+        if (pos < query.length() && query.charAt(pos) == '"') {
+            pos++;
+            while (pos < query.length() && query.charAt(pos) != '"') {
+                if (query.charAt(pos) == '\\' && pos + 1 < query.length()) {
+                    pos++;
+                }
+                sb.append(query.charAt(pos++));
+            }
+            if (pos == query.length()) {
+                throw error("Unterminated string");
+            }
+            pos++;
+        } else {
+            while (pos < query.length() && !isSpace(query.charAt(pos))
+                   && "()!=<>\"".indexOf(query.charAt(pos)) < 0
+                   && !query.startsWith("..", pos)) {
+                sb.append(query.charAt(pos++));
+            }
+            if (sb.length() == 0) {
+                throw error("Expected a value");
+            }
+        }
+        skipSpace();
+        return sb.toString();
+    }
+
+    /**
+     *Consume the word w, in any case, if it comes next
+     */
+    private boolean keyword(String w) {
+        int end = pos + w.length();
+        if (!query.regionMatches(true, pos, w, 0, w.length())
+            || (end < query.length()
+                && Character.isLetterOrDigit(query.charAt(end)))) {
+            return false;
+        }
+        pos = end;
+        skipSpace();
+        return true;
+    }
+
+    /**
+     *Consume the punctuation s if it comes next
+     */
+    private boolean symbol(String s) {
+        if (!query.startsWith(s, pos)) {
+            return false;
+        }
+        pos += s.length();
+        skipSpace();
+        return true;
+    }
+
+    private void skipSpace() {
+        while (pos < query.length() && isSpace(query.charAt(pos))) {
+            pos++;
+        }
+    }
+
+    private static boolean isSpace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\r';
+    }
+
+    private IllegalArgumentException error(String message) {
+        return new IllegalArgumentException(String.format(Locale.ROOT,
+            "%s at %d in query: %s", message, pos, query));
+    }
+
+    public static void main(String[] args) {
+        TagQuery query = parse(args[1]);
+        PgnHeaders headers = new PgnHeaders();
+        long games = 0;
+        long start = System.nanoTime();
+        try (PgnSource reader = PgnSource.open(Paths.get(args[0]))) {
+            while (reader.nextMatching(query, headers) != null) {
+                games++;
+            }
+        } catch (IOException e) {
+            System.err.format("IOException: %s%n", e);
+            System.exit(1);
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.format("%d games match in %.2f s%n", games, seconds);
+    }
+}
@@ -0,0 +1,378 @@
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.IntPredicate;
+
+/**
+ *The headers of many games held in memory column by column rather
+ *than as a PgnHeaders per game. Names of players, events and sites
+ *repeat from game to game, so each distinct name is stored once in a
+ *dictionary and the columns hold its code; dates are packed into an
+ *int as yyyymmdd, ratings into a short and results into a byte. A
+ *game costs 33 bytes however long its tags are, and a filter over any
+ *column is a loop over a primitive array.
+ *Usage: java TagStore games.pgn [player]
+ *@author Jordan Goldstein
+ *@version 1.0.0
+ */
+public class TagStore {
+    /**The result of a game that is unknown or still in progress, "*"*/
+    public static final byte UNKNOWN = 0;
+    /**The result of a game white won, "1-0"*/
+    public static final byte WHITE_WINS = 1;
+    /**The result of a game black won, "0-1"*/
+    public static final byte BLACK_WINS = 2;
+    /**The result of a drawn game, "1/2-1/2"*/
+    public static final byte DRAW = 3;
+
+    /**
+     *The distinct values of a string column, each with a code counted
+     *up from 0 in the order they were first seen
+     */
+    public static class Dictionary {
+        private final Map<String, Integer> codes = new HashMap<>();
+        private String[] values = new String[64];
+
+        /**
+         *@param value a value of the column
+         *@return the code of value, or -1 if no game has it
+         */
+        public int code(String value) {
+            Integer code = codes.get(value);
+            return (code == null) ? -1 : code;
+        }
+
+        /**
+         *@param code a code given out by this dictionary
+         *@return the value with that code
+         */
+        public String value(int code) {
+            return values[code];
+        }
+
+        /**
+         *@return the number of distinct values
+         */
+        public int size() {
+            return codes.size();
+        }
+
+        /**
+         *Return the code of value, giving it the next code if it has
+         *none yet
+         */
+        private int add(String value) {
+            Integer code = codes.get(value);
+            if (code != null) {
+                return code;
+            }
+            int next = codes.size();
+            if (next == values.length) {
+                values = Arrays.copyOf(values, next * 2);
+            }
+            values[next] = value;
+            codes.put(value, next);
+            return next;
+        }
+    }
+
+    private final Dictionary players = new Dictionary();
+    private final Dictionary events = new Dictionary();
+    private final Dictionary sites = new Dictionary();
+    private int size;
+    private long[] offsets = new long[1024];
+    private int[] white = new int[1024];
+    private int[] black = new int[1024];
+    private int[] event = new int[1024];
+    private int[] site = new int[1024];
+    private int[] date = new int[1024];
+    private short[] whiteElo = new short[1024];
+    private short[] blackElo = new short[1024];
+    private byte[] result = new byte[1024];
+
+    /**
+     *Read the headers of every game in a PGN file, skipping the
+     *movetext
+     *@param file the file to read, which may be compressed
+     *@return a store holding a row per game, in file order
+     *@throws IOException if the file cannot be read
+     */
+    public static TagStore load(Path file) throws IOException {
+        TagStore store = new TagStore();
+        PgnHeaders headers = new PgnHeaders();
+        try (PgnSource reader = PgnSource.open(file)) {
+            while (reader.nextHeaders(headers)) {
+                store.add(headers, reader.offset());
+            }
+        }
+        return store;
+    }
+
+    /**
+     *Add a game to the end of the store
+     *@param headers the tag pairs of the game
+     *@param offset the byte offset of the game in its file
+     *@return the row of the game
+     */
+    public int add(PgnHeaders headers, long offset) {
+        if (size == result.length) {
+            grow(size * 2);
+        }
+        int row = size++;
+        offsets[row] = offset;
+        white[row] = players.add(headers.get("White", "?"));
+        black[row] = players.add(headers.get("Black", "?"));
+        event[row] = events.add(headers.get("Event", "?"));
+        site[row] = sites.add(headers.get("Site", "?"));
+        date[row] = parseDate(headers.get("Date"));
+        whiteElo[row] = parseElo(headers.get("WhiteElo"));
+        blackElo[row] = parseElo(headers.get("BlackElo"));
+        result[row] = parseResult(headers.get("Result"));
+        return row;
+    }
+
+    /**
+     *@return the number of games in the store
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     *@return the names of the players, white and black alike
+     */
+    public Dictionary players() {
+        return players;
+    }
+
+    /**
+     *@return the names of the events
+     */
+    public Dictionary events() {
+        return events;
+    }
+
+    /**
+     *@return the names of the sites
+     */
+    public Dictionary sites() {
+        return sites;
+    }
+
+    /**
+     *@param row a row of the store
+     *@return the byte offset of the game in its file
+     */
+    public long offset(int row) {
+        return offsets[row];
+    }
+
+    /**
+     *@param row a row of the store
+     *@return the players() code of the white player
+     */
+    public int white(int row) {
+        return white[row];
+    }
+
+    /**
+     *@param row a row of the store
+     *@return the players() code of the black player
+     */
+    public int black(int row) {
+        return black[row];
+    }
+
+    /**
+     *@param row a row of the store
+     *@return the events() code of the event
+     */
+    public int event(int row) {
+        return event[row];
+    }
+
+    /**
+     *@param row a row of the store
+     *@return the sites() code of the site
+     */
+    public int site(int row) {
+        return site[row];
+    }
+
+    /**
+     *@param row a row of the store
+     *@return the date as yyyymmdd, with 0 for any part that is unknown
+     */
+    public int date(int row) {
+        return date[row];
+    }
+
+    /**
+     *@param row a row of the store
+     *@return the rating of the white player, 0 if not given
+     */
+    public short whiteElo(int row) {
+        return whiteElo[row];
+    }
+
+    /**
+     *@param row a row of the store
+     *@return the rating of the black player, 0 if not given
+     */
+    public short blackElo(int row) {
+        return blackElo[row];
+    }
+
+    /**
+     *@param row a row of the store
+     *@return WHITE_WINS, BLACK_WINS, DRAW or UNKNOWN
+     */
+    public byte result(int row) {
+        return result[row];
+    }
+
+    /**
+     *@param test the rows to keep
+     *@return the rows that pass test, in order
+     */
+    public int[] select(IntPredicate test) {
+        int[] rows = new int[64];
+        int n = 0;
+        for (int row = 0; row < size; row++) {
+            if (test.test(row)) {
+                if (n == rows.length) {
+                    rows = Arrays.copyOf(rows, n * 2);
+                }
+                rows[n++] = row;
+            }
+        }
+        return Arrays.copyOf(rows, n);
+    }
+
+    /**
+     *@param player the name of a player
+     *@return the rows of the games player played with either colour
+     */
+    public int[] games(String player) {
+        int code = players.code(player);
+        if (code < 0) {
+            return new int[0];
+        }
+        return select(row -> white[row] == code || black[row] == code);
+    }
+
+    /**
+     *@param from the first date to keep, as yyyymmdd
+     *@param to the last date to keep, as yyyymmdd
+     *@return the rows of the games played from from to to
+     */
+    public int[] between(int from, int to) {
+        return select(row -> date[row] >= from && date[row] <= to);
+    }
+
+    /**
+     *Parse a PGN date such as "2015.03.21" or "2015.??.??" into
+     *yyyymmdd, with 0 for each part that is unknown
+     *@param value the value of a Date tag, or null
+     *@return the packed date, 0 if value is missing or malformed
+     */
+    public static int parseDate(String value) {
+        if (value == null || value.length() != 10 || value.charAt(4) != '.'
+            || value.charAt(7) != '.') {
+            return 0;
+        }
+        int year = digits(value, 0, 4);
+        int month = digits(value, 5, 7);
+        int day = digits(value, 8, 10);
+        return (year < 0) ? 0 : year * 10000 + Math.max(month, 0) * 100
+            + Math.max(day, 0);
+    }
+
+    /**
+     *@param value the value of a WhiteElo or BlackElo tag, or null
+     *@return the rating, 0 if value is missing or not a rating
+     */
+    public static short parseElo(String value) {
+        if (value == null || value.isEmpty() || value.length() > 4) {
+            return 0;
+        }
+        int elo = digits(value, 0, value.length());
+        return (short) Math.max(elo, 0);
+    }
+
+    /**
+     *@param value the value of a Result tag, or null
+     *@return WHITE_WINS, BLACK_WINS, DRAW or UNKNOWN
+     */
+    public static byte parseResult(String value) {
+        if ("1-0".equals(value)) {
+            return WHITE_WINS;
+        }
+        if ("0-1".equals(value)) {
+            return BLACK_WINS;
+        }
+        return "1/2-1/2".equals(value) ? DRAW : UNKNOWN;
+    }
+
+    /**
+     *Return the number written in value[from, to), or -1 if it holds
+     *anything but digits
+     */
+    private static int digits(String value, int from, int to) {
+        int n = 0;
+        for (int i = from; i < to; i++) {
+            char c = value.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            n = n * 10 + (c - '0');
+        }
+        return n;
+    }
+
+    private void grow(int capacity) {
+        offsets = Arrays.copyOf(offsets, capacity);
+        white = Arrays.copyOf(white, capacity);
+        black = Arrays.copyOf(black, capacity);
+        event = Arrays.copyOf(event, capacity);
+        site = Arrays.copyOf(site, capacity);
+        date = Arrays.copyOf(date, capacity);
+        whiteElo = Arrays.copyOf(whiteElo, capacity);
+        blackElo = Arrays.copyOf(blackElo, capacity);
+        result = Arrays.copyOf(result, capacity);
+    }
+
+    public static void main(String[] args) {
+        long start = System.nanoTime();
+        TagStore store = null;
+        try {
+            store = load(Paths.get(args[0]));
+        } catch (IOException e) {
+            System.err.format("IOException: %s%n", e);
+            System.exit(1);
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.format("%d games, %d players, %d events, %d sites "
+                          + "loaded in %.2f s%n", store.size(),
+                          store.players().size(), store.events().size(),
+                          store.sites().size(), seconds);
+        if (args.length > 1) {
+            int player = store.players().code(args[1]);
+            int[] rows = store.games(args[1]);
+            double score = 0;
+            for (int row : rows) {
+                byte result = store.result(row);
+                if (result == DRAW) {
+                    score += 0.5;
+                } else if (result == (store.white(row) == player
+                                      ? WHITE_WINS : BLACK_WINS)) {
+                    score++;
+                }
+            }
+            System.out.format("%s: %.1f/%d%n", args[1], score, rows.length);
+        }
+    }
+}
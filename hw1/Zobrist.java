@@ -0,0 +1,73 @@
+/**
+ *Random keys for Zobrist hashing. A position's hash is the xor of
+ *the key of every piece on its square, its castling rights, the file
+ *of a capturable en passant square and, if black is to move, SIDE.
+ *The keys come from a fixed seed so hashes are stable between runs
+ *and can be stored on disk.
+ *@author Jordan Goldstein
+ *@version 1.0.0
+ */
+public final class Zobrist {
+    private static final long[][] PIECE = new long[12][64];
+    private static final long[] CASTLING = new long[16];
+    private static final long[] EP_FILE = new long[8];
+
+    /**Mixed in when black is to move*/
+    public static final long SIDE;
+
+    private static long seed = 0x9E3779B97F4A7C15L;
+
+    static {
+        for (int piece = 0; piece < 12; piece++) {
+            for (int sq = 0; sq < 64; sq++) {
+                PIECE[piece][sq] = random();
+            }
+        }
+        for (int i = 0; i < CASTLING.length; i++) {
+            CASTLING[i] = random();
+        }
+        CASTLING[0] = 0L;
+        for (int i = 0; i < EP_FILE.length; i++) {
+            EP_FILE[i] = random();
+        }
+        SIDE = random();
+    }
+
+    private Zobrist() {
+    }
+
+    /**
+     *@param piece the piece, colour * 6 + type
+     *@param sq the square it stands on
+     *@return the key for that piece on that square
+     */
+    public static long piece(int piece, int sq) {
+        return PIECE[piece][sq];
+    }
+
+    /**
+     *@param rights the castling rights, as right bits
+     *@return the key for that set of rights
+     */
+    public static long castling(int rights) {
+        return CASTLING[rights];
+    }
+
+    /**
+     *@param file the file of the en passant square
+     *@return the key for an en passant capture on that file
+     */
+    public static long epFile(int file) {
+        return EP_FILE[file];
+    }
+
+    /**
+     *splitmix64, so the keys are the same on every run
+     */
+    private static long random() {
+        long z = (seed += 0x9E3779B97F4A7C15L);
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}